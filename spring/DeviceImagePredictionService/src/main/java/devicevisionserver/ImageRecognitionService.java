@@ -1,13 +1,60 @@
 package devicevisionserver;
 
+import devicevisionserver.recognition.MicroBatcher;
+import devicevisionserver.recognition.RecognitionEngine;
+import devicevisionserver.recognition.RecognitionException;
+import devicevisionserver.recognition.RecognitionResultCache;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @Service
 public class ImageRecognitionService {
 
+    @Autowired
+    private RecognitionEngine recognitionEngine;
+
+    @Autowired
+    private RecognitionResultCache resultCache;
+
+    @Value("${recognition.batch.max-size:8}")
+    private int maxBatchSize;
+
+    @Value("${recognition.batch.max-wait-ms:5}")
+    private long maxWaitMillis;
+
+    @Value("${recognition.batch.queue-capacity:256}")
+    private int queueCapacity;
+
+    @Value("${recognition.timeout-ms:10000}")
+    private long timeoutMillis;
+
+    // 命中缓存时仍按此比例重新推理并与缓存结果比对
+    @Value("${recognition.cache.verify-rate:0.01}")
+    private double verifyRate;
+
+    private MicroBatcher<float[], String> batcher;
+
+    @PostConstruct
+    public void start() {
+        batcher = new MicroBatcher<>(recognitionEngine::infer, maxBatchSize, maxWaitMillis,
+                recognitionEngine.concurrency(), queueCapacity, "recognition-batch");
+    }
+
+    @PreDestroy
+    public void stop() {
+        batcher.close();
+    }
+
     public String processImage(MultipartFile file) throws IOException {
         if (file.isEmpty()) {
             return "未接收到图片";
@@ -18,7 +65,62 @@ public class ImageRecognitionService {
                 file.getSize());
     }
 
+    /**
+     * 先按设备和帧的dHash查结果缓存，近似相同的帧直接返回缓存结果；未命中或抽中复核时才推理。
+     * dHash与模型输入来自同一次解码；引擎不做推理时（占位引擎）不查缓存，也不解码
+     */
+    public String recognize(String deviceId, byte[] imageBytes) {
+        if (!resultCache.isEnabled() || deviceId == null || !recognitionEngine.cacheable()) {
+            return recognize(imageBytes);
+        }
+        RecognitionEngine.Prepared prepared;
+        try {
+            prepared = recognitionEngine.prepare(imageBytes);
+        } catch (IOException e) {
+            throw new RecognitionException("图片预处理失败: " + e.getMessage(), e);
+        }
+
+        String cached = resultCache.lookup(deviceId, prepared.dHash());
+        if (cached != null && (verifyRate <= 0 || ThreadLocalRandom.current().nextDouble() >= verifyRate)) {
+            return cached;
+        }
+        String result = infer(prepared.input());
+        if (cached != null) {
+            resultCache.recordVerification(labelOf(cached).equals(labelOf(result)));
+        }
+        resultCache.put(deviceId, prepared.dHash(), result);
+        return result;
+    }
+
+    /**
+     * 在调用线程上预处理，再交给微批处理合并推理
+     */
     public String recognize(byte[] imageBytes) {
-        return "当前未启用识别模型，图片已成功接收并保存";
+        float[] input;
+        try {
+            input = recognitionEngine.preprocess(imageBytes);
+        } catch (IOException e) {
+            throw new RecognitionException("图片预处理失败: " + e.getMessage(), e);
+        }
+        return infer(input);
+    }
+
+    private String infer(float[] input) {
+        try {
+            return batcher.submit(input).get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw new RecognitionException("识别失败: " + e.getCause().getMessage(), e.getCause());
+        } catch (TimeoutException e) {
+            throw new RecognitionException("识别超时", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RecognitionException("识别被中断", e);
+        }
+    }
+
+    // 识别结果形如 label(0.93)，比对时只看类别，不看得分
+    private static String labelOf(String result) {
+        int paren = result.lastIndexOf('(');
+        return paren > 0 ? result.substring(0, paren) : result;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,16 @@
+package devicevisionserver.admission;
+
+// 设备超过配额或排队超时时抛出，调用方应返回429并让设备按建议间隔降低上传频率
+public class AdmissionRejectedException extends RuntimeException {
+
+    private final int suggestedIntervalMillis;
+
+    public AdmissionRejectedException(String message, int suggestedIntervalMillis) {
+        super(message);
+        this.suggestedIntervalMillis = suggestedIntervalMillis;
+    }
+
+    public int getSuggestedIntervalMillis() {
+        return suggestedIntervalMillis;
+    }
+}
@@ -0,0 +1,12 @@
+package devicevisionserver.admission;
+
+public record AdmissionStats(int slots,
+                             int availableSlots,
+                             int activeDevices,
+                             int waiting,
+                             long admitted,
+                             long queued,
+                             long rejected,
+                             long timedOut,
+                             double avgServiceMillis) {
+}
@@ -0,0 +1,279 @@
+package devicevisionserver.admission;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 按设备的准入控制：解码、保存、识别阶段全局最多同时处理 slots 帧，每个设备最多同时占用
+ * per-device-limit×权重 个名额，另外最多排队 per-device-queue 帧，超出直接拒绝。
+ * 名额不足时请求按设备排队，名额释放后在有等待请求的设备之间按权重轮转分配，
+ * 高频设备只能排在自己的队列里，不会挤占其他设备。
+ * 被拒绝时给出建议采集间隔：按当前活跃设备数平分处理能力得到的每设备间隔。
+ */
+@Component
+public class DeviceAdmission {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeviceAdmission.class);
+    private static final double ALPHA = 0.1;
+
+    private static final class Waiter {
+        private final Condition condition;
+        private boolean admitted;
+
+        private Waiter(Condition condition) {
+            this.condition = condition;
+        }
+    }
+
+    private static final class DeviceState {
+        private final String deviceId;
+        private final int weight;
+        private final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+        private int active;
+        private int credit;
+        private boolean ready;
+
+        private DeviceState(String deviceId, int weight) {
+            this.deviceId = deviceId;
+            this.weight = weight;
+            this.credit = weight;
+        }
+    }
+
+    /**
+     * 已获得的处理名额，处理完成后关闭；重复关闭无效
+     */
+    public final class Permit implements AutoCloseable {
+        private final DeviceState device;
+        private final long admittedAt;
+        private boolean released;
+
+        private Permit(DeviceState device, long admittedAt) {
+            this.device = device;
+            this.admittedAt = admittedAt;
+        }
+
+        @Override
+        public void close() {
+            if (released) return;
+            released = true;
+            release(device, System.nanoTime() - admittedAt);
+        }
+    }
+
+    @Value("${admission.enabled:true}")
+    private boolean enabled;
+
+    @Value("${admission.slots:8}")
+    private int slots;
+
+    @Value("${admission.per-device-limit:2}")
+    private int perDeviceLimit;
+
+    @Value("${admission.per-device-queue:2}")
+    private int perDeviceQueue;
+
+    @Value("${admission.max-wait-ms:2000}")
+    private long maxWaitMillis;
+
+    @Value("${admission.min-interval-ms:1000}")
+    private int minIntervalMillis;
+
+    @Value("${admission.max-interval-ms:30000}")
+    private int maxIntervalMillis;
+
+    // 设备权重，例如 esp32_cam_gate:2,esp32_cam_lobby:1，未列出的设备权重为1
+    @Value("${admission.weights:}")
+    private String weightSpec;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, DeviceState> devices = new HashMap<>();
+    // 有等待请求的设备，按轮转顺序排列
+    private final ArrayDeque<DeviceState> readyDevices = new ArrayDeque<>();
+    private Map<String, Integer> weights;
+    private int available;
+    private int waiting;
+    private long admitted;
+    private long queued;
+    private long rejected;
+    private long timedOut;
+    private double serviceMillisEwma = -1;
+
+    @PostConstruct
+    public void init() {
+        weights = parseWeights(weightSpec);
+        available = slots;
+        logger.info("设备准入控制{}，全局名额: {}，单设备并发: {}，单设备排队: {}，权重: {}",
+                enabled ? "启用" : "关闭", slots, perDeviceLimit, perDeviceQueue, weights);
+    }
+
+    /**
+     * 获取处理名额，必要时排队等待；超出设备配额或等待超时时抛出AdmissionRejectedException
+     */
+    public Permit acquire(String deviceId) {
+        if (!enabled) {
+            return new Permit(null, System.nanoTime());
+        }
+        Waiter waiter;
+        DeviceState device;
+        lock.lock();
+        try {
+            device = devices.computeIfAbsent(deviceId, id -> new DeviceState(id, weights.getOrDefault(id, 1)));
+            int limit = limit(device);
+            if (device.active + device.waiters.size() >= limit + perDeviceQueue) {
+                rejected++;
+                removeIfIdle(device);
+                throw new AdmissionRejectedException("设备 " + deviceId + " 请求过多", suggestedInterval(device));
+            }
+            if (readyDevices.isEmpty() && available > 0 && device.active < limit) {
+                grant(device);
+                return new Permit(device, System.nanoTime());
+            }
+
+            waiter = new Waiter(lock.newCondition());
+            device.waiters.addLast(waiter);
+            waiting++;
+            queued++;
+            if (!device.ready) {
+                device.ready = true;
+                readyDevices.addLast(device);
+            }
+            dispatch();
+
+            long remaining = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+            boolean interrupted = false;
+            while (!waiter.admitted && remaining > 0 && !interrupted) {
+                try {
+                    remaining = waiter.condition.awaitNanos(remaining);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (!waiter.admitted) {
+                device.waiters.remove(waiter);
+                waiting--;
+                timedOut++;
+                if (device.waiters.isEmpty() && device.ready) {
+                    device.ready = false;
+                    readyDevices.remove(device);
+                }
+                removeIfIdle(device);
+                throw new AdmissionRejectedException("设备 " + deviceId + " 排队超时", suggestedInterval(device));
+            }
+        } finally {
+            lock.unlock();
+        }
+        return new Permit(device, System.nanoTime());
+    }
+
+    public AdmissionStats stats() {
+        lock.lock();
+        try {
+            return new AdmissionStats(slots, available, devices.size(), waiting,
+                    admitted, queued, rejected, timedOut, Math.max(0, serviceMillisEwma));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(DeviceState device, long heldNanos) {
+        if (device == null) return;
+        lock.lock();
+        try {
+            double millis = heldNanos / 1e6;
+            serviceMillisEwma = serviceMillisEwma < 0 ? millis : serviceMillisEwma + ALPHA * (millis - serviceMillisEwma);
+            device.active--;
+            available++;
+            dispatch();
+            removeIfIdle(device);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 把空闲名额按权重轮转分给排队中的设备：队首设备每轮最多连续获得"权重"个名额，
+     * 已达并发上限的设备本轮跳过；转完一整圈都没有可分配的设备时停止
+     */
+    private void dispatch() {
+        int skipped = 0;
+        while (available > 0 && !readyDevices.isEmpty() && skipped < readyDevices.size()) {
+            DeviceState device = readyDevices.peekFirst();
+            if (device.active >= limit(device)) {
+                device.credit = device.weight;
+                readyDevices.addLast(readyDevices.pollFirst());
+                skipped++;
+                continue;
+            }
+            skipped = 0;
+            Waiter waiter = device.waiters.pollFirst();
+            waiting--;
+            grant(device);
+            waiter.admitted = true;
+            waiter.condition.signal();
+
+            if (device.waiters.isEmpty()) {
+                readyDevices.pollFirst();
+                device.ready = false;
+                device.credit = device.weight;
+            } else if (--device.credit <= 0) {
+                device.credit = device.weight;
+                readyDevices.addLast(readyDevices.pollFirst());
+            }
+        }
+    }
+
+    private void grant(DeviceState device) {
+        device.active++;
+        available--;
+        admitted++;
+    }
+
+    private int limit(DeviceState device) {
+        return perDeviceLimit * device.weight;
+    }
+
+    private void removeIfIdle(DeviceState device) {
+        if (device.active == 0 && device.waiters.isEmpty()) {
+            devices.remove(device.deviceId);
+        }
+    }
+
+    /**
+     * 活跃设备平分全部名额时每个设备的帧间隔：平均处理耗时 × 活跃设备数 / (名额数 × 设备权重)
+     */
+    private int suggestedInterval(DeviceState device) {
+        double serviceMillis = serviceMillisEwma < 0 ? 100 : serviceMillisEwma;
+        int activeDevices = Math.max(1, devices.size());
+        double interval = serviceMillis * activeDevices / ((double) slots * device.weight);
+        return (int) Math.min(maxIntervalMillis, Math.max(minIntervalMillis, Math.ceil(interval)));
+    }
+
+    static Map<String, Integer> parseWeights(String spec) {
+        Map<String, Integer> result = new HashMap<>();
+        if (spec == null) return result;
+        for (String entry : spec.split(",")) {
+            String trimmed = entry.trim();
+            if (trimmed.isEmpty()) continue;
+            int colon = trimmed.lastIndexOf(':');
+            if (colon <= 0) {
+                throw new IllegalArgumentException("设备权重格式应为 设备ID:权重，实际: " + trimmed);
+            }
+            result.put(trimmed.substring(0, colon).trim(), Math.max(1, Integer.parseInt(trimmed.substring(colon + 1).trim())));
+        }
+        return result;
+    }
+}
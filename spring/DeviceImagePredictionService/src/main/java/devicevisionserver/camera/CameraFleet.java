@@ -0,0 +1,117 @@
+package devicevisionserver.camera;
+
+import devicevisionserver.controller.Camera;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 摄像头集群轮询：所有摄像头共用一个HttpClient和少量调度线程，采集请求全部异步发出，
+ * 摄像头数量增加不会带来额外线程
+ */
+@Component
+@ConditionalOnProperty(prefix = "camera.fleet", name = "enabled", havingValue = "true")
+public class CameraFleet {
+
+    private static final Logger logger = LoggerFactory.getLogger(CameraFleet.class);
+
+    @Autowired
+    private CameraProperties cameraProperties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private ScheduledExecutorService scheduler;
+    private ExecutorService httpExecutor;
+    private final List<Camera> cameras = new ArrayList<>();
+
+    @PostConstruct
+    public void start() {
+        CameraProperties.Spool spool = cameraProperties.getSpool();
+        if (spool.isEnabled() && (spool.getSizeMb() < 1 || spool.getSizeMb() > FrameSpool.MAX_SIZE_MB)) {
+            throw new IllegalArgumentException("camera.spool.size-mb 应在1~" + FrameSpool.MAX_SIZE_MB + "之间，实际: " + spool.getSizeMb());
+        }
+        scheduler = Executors.newScheduledThreadPool(cameraProperties.getSchedulerThreads(), namedThreads("camera-scheduler"));
+        httpExecutor = Executors.newFixedThreadPool(cameraProperties.getHttpThreads(), namedThreads("camera-http"));
+        HttpClient client = Camera.newSharedClient(httpExecutor);
+
+        List<CameraProperties.Endpoint> endpoints = cameraProperties.getEndpoints();
+        for (int i = 0; i < endpoints.size(); i++) {
+            CameraProperties.Endpoint endpoint = endpoints.get(i);
+            CaptureRateController rateController = new CaptureRateController(endpoint.getIntervalMs(),
+                    endpoint.getMaxIntervalMs(), endpoint.getTargetLatencyMs(), endpoint.isAdaptive());
+            Camera camera = new Camera(endpoint.getId(), endpoint.getBaseUrl(), cameraProperties.getBackendUrl(),
+                    rateController, endpoint.getMaxInFlight(), client, scheduler);
+            camera.setMetrics(new CameraMetrics(meterRegistry, camera.getDeviceId()));
+            attachSpool(camera);
+            if (endpoint.getGateThreshold() > 0) {
+                camera.setFrameGate(new FrameGate(endpoint.getGateThreshold(), endpoint.getKeyframeIntervalMs()));
+            }
+            // 错开各摄像头的首次采集时间，避免所有请求在同一时刻发出
+            camera.startCapture((long) endpoint.getIntervalMs() * i / endpoints.size());
+            cameras.add(camera);
+        }
+        logger.info("摄像头集群启动，数量: {}", cameras.size());
+    }
+
+    @PreDestroy
+    public void stop() {
+        for (Camera camera : cameras) {
+            camera.stopCapture();
+        }
+        scheduler.shutdown();
+        httpExecutor.shutdown();
+        for (Camera camera : cameras) {
+            FrameSpool spool = camera.getSpool();
+            if (spool == null) continue;
+            try {
+                spool.close();
+            } catch (IOException e) {
+                logger.error("关闭帧缓存失败，摄像头: {}", camera.getDeviceId(), e);
+            }
+        }
+        logger.info("摄像头集群已停止");
+    }
+
+    public List<Camera> getCameras() {
+        return cameras;
+    }
+
+    // 缓存文件打不开时该摄像头不启用缓存，不影响采集
+    private void attachSpool(Camera camera) {
+        CameraProperties.Spool config = cameraProperties.getSpool();
+        if (!config.isEnabled()) return;
+        Path file = Path.of(config.getPath()).resolve(camera.getDeviceId().replaceAll("[^A-Za-z0-9_-]", "_") + ".spool");
+        try {
+            FrameSpool spool = new FrameSpool(file, (int) (config.getSizeMb() * 1024L * 1024));
+            camera.setSpool(spool, config.getDrainBatch(), config.getDrainIntervalMs());
+        } catch (IOException e) {
+            logger.error("打开帧缓存失败: {}", file, e);
+        }
+    }
+
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger index = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + index.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,40 @@
+package devicevisionserver.camera;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单个摄像头的采集/上传耗时直方图，创建摄像头时注册一次，之后每次采集只记录耗时
+ */
+public class CameraMetrics {
+
+    private final Timer fetchTimer;
+    private final Timer sendTimer;
+
+    public CameraMetrics(MeterRegistry registry, String deviceId) {
+        this.fetchTimer = timer(registry, deviceId, "fetch");
+        this.sendTimer = timer(registry, deviceId, "send");
+    }
+
+    public void recordFetch(long nanos) {
+        fetchTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordSend(long nanos) {
+        sendTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private static Timer timer(MeterRegistry registry, String deviceId, String stage) {
+        return Timer.builder("camera.request")
+                .description("摄像头采集与上传后端的耗时")
+                .tag("device", deviceId)
+                .tag("stage", stage)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofSeconds(10))
+                .register(registry);
+    }
+}
@@ -0,0 +1,96 @@
+package devicevisionserver.camera;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// 摄像头列表配置，例如 camera.endpoints[0].base-url=http://192.168.1.100
+@Component
+@ConfigurationProperties(prefix = "camera")
+public class CameraProperties {
+    private String backendUrl = "http://localhost:8080/api/receive";
+    private int schedulerThreads = 2;
+    private int httpThreads = 4;
+    private List<Endpoint> endpoints = new ArrayList<>();
+    private Spool spool = new Spool();
+
+    public String getBackendUrl() { return backendUrl; }
+    public void setBackendUrl(String backendUrl) { this.backendUrl = backendUrl; }
+
+    public int getSchedulerThreads() { return schedulerThreads; }
+    public void setSchedulerThreads(int schedulerThreads) { this.schedulerThreads = schedulerThreads; }
+
+    public int getHttpThreads() { return httpThreads; }
+    public void setHttpThreads(int httpThreads) { this.httpThreads = httpThreads; }
+
+    public List<Endpoint> getEndpoints() { return endpoints; }
+    public void setEndpoints(List<Endpoint> endpoints) { this.endpoints = endpoints; }
+
+    public Spool getSpool() { return spool; }
+    public void setSpool(Spool spool) { this.spool = spool; }
+
+    // 上传失败帧的本地缓存，每个摄像头一个文件 {path}/{id}.spool
+    public static class Spool {
+        private boolean enabled = false;
+        private String path = "./camera-spool";
+        private int sizeMb = 64;
+        private int drainBatch = 5;
+        private long drainIntervalMs = 1000;
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        public String getPath() { return path; }
+        public void setPath(String path) { this.path = path; }
+
+        public int getSizeMb() { return sizeMb; }
+        public void setSizeMb(int sizeMb) { this.sizeMb = sizeMb; }
+
+        public int getDrainBatch() { return drainBatch; }
+        public void setDrainBatch(int drainBatch) { this.drainBatch = drainBatch; }
+
+        public long getDrainIntervalMs() { return drainIntervalMs; }
+        public void setDrainIntervalMs(long drainIntervalMs) { this.drainIntervalMs = drainIntervalMs; }
+    }
+
+    public static class Endpoint {
+        private String id;
+        private String baseUrl;
+        private int intervalMs = 2000;
+        private int maxInFlight = 1;
+        private boolean adaptive = true;
+        private int maxIntervalMs = 30000;
+        private long targetLatencyMs = 1000;
+        private double gateThreshold = 0;
+        private long keyframeIntervalMs = 60000;
+
+        public String getId() { return id; }
+        public void setId(String id) { this.id = id; }
+
+        public String getBaseUrl() { return baseUrl; }
+        public void setBaseUrl(String baseUrl) { this.baseUrl = baseUrl; }
+
+        public int getIntervalMs() { return intervalMs; }
+        public void setIntervalMs(int intervalMs) { this.intervalMs = intervalMs; }
+
+        public int getMaxInFlight() { return maxInFlight; }
+        public void setMaxInFlight(int maxInFlight) { this.maxInFlight = maxInFlight; }
+
+        public boolean isAdaptive() { return adaptive; }
+        public void setAdaptive(boolean adaptive) { this.adaptive = adaptive; }
+
+        public int getMaxIntervalMs() { return maxIntervalMs; }
+        public void setMaxIntervalMs(int maxIntervalMs) { this.maxIntervalMs = maxIntervalMs; }
+
+        public long getTargetLatencyMs() { return targetLatencyMs; }
+        public void setTargetLatencyMs(long targetLatencyMs) { this.targetLatencyMs = targetLatencyMs; }
+
+        public double getGateThreshold() { return gateThreshold; }
+        public void setGateThreshold(double gateThreshold) { this.gateThreshold = gateThreshold; }
+
+        public long getKeyframeIntervalMs() { return keyframeIntervalMs; }
+        public void setKeyframeIntervalMs(long keyframeIntervalMs) { this.keyframeIntervalMs = keyframeIntervalMs; }
+    }
+}
@@ -0,0 +1,100 @@
+package devicevisionserver.camera;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 采集间隔的自适应控制（AIMD）：后端变慢、出错或上一帧还未发完时按倍数放大间隔，
+ * 后端有余量时按固定步长逐步恢复，最快不低于基础间隔。基础间隔可由后端指令调整；
+ * 后端限流时只设置一个临时下限，限流结束后回到原来的间隔。
+ */
+public class CaptureRateController {
+    private static final double ALPHA = 0.2;
+    private static final double BACKOFF_FACTOR = 1.5;
+    private static final double ERROR_RATE_LIMIT = 0.2;
+    // 限流下限保持的间隔个数，期间再次被限流会续期
+    private static final int THROTTLE_HOLD_INTERVALS = 3;
+
+    private final boolean adaptive;
+    private final int maxInterval;
+    private final long targetLatencyMillis;
+    private int baseInterval;
+    private volatile int currentInterval;
+    private double latencyEwma = -1;
+    private double errorEwma;
+    private int throttleInterval;
+    private long throttleUntilNanos;
+
+    public CaptureRateController(int baseInterval, int maxInterval, long targetLatencyMillis, boolean adaptive) {
+        this.baseInterval = baseInterval;
+        this.currentInterval = baseInterval;
+        this.maxInterval = Math.max(baseInterval, maxInterval);
+        this.targetLatencyMillis = targetLatencyMillis;
+        this.adaptive = adaptive;
+    }
+
+    public synchronized int currentInterval() {
+        if (throttleInterval > 0) {
+            if (System.nanoTime() - throttleUntilNanos < 0) {
+                return Math.max(currentInterval, throttleInterval);
+            }
+            throttleInterval = 0;
+        }
+        return currentInterval;
+    }
+
+    public synchronized int baseInterval() {
+        return baseInterval;
+    }
+
+    public synchronized double latencyEwma() {
+        return latencyEwma;
+    }
+
+    public synchronized double errorRate() {
+        return errorEwma;
+    }
+
+    // 后端指令设置新的基础间隔，当前间隔同时重置
+    public synchronized void setBaseInterval(int interval) {
+        baseInterval = interval;
+        currentInterval = interval;
+    }
+
+    /**
+     * 后端限流：之后 THROTTLE_HOLD_INTERVALS 个限流间隔内采集间隔不低于interval，基础间隔和自适应状态不变
+     */
+    public synchronized void throttle(int interval) {
+        throttleInterval = interval;
+        throttleUntilNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos((long) interval * THROTTLE_HOLD_INTERVALS);
+    }
+
+    public synchronized int onSuccess(long latencyMillis) {
+        latencyEwma = latencyEwma < 0 ? latencyMillis : latencyEwma + ALPHA * (latencyMillis - latencyEwma);
+        errorEwma -= ALPHA * errorEwma;
+        if (!adaptive) return currentInterval;
+
+        if (latencyEwma > targetLatencyMillis || errorEwma > ERROR_RATE_LIMIT) {
+            backOff();
+        } else if (latencyEwma < targetLatencyMillis / 2.0 && currentInterval > baseInterval) {
+            int step = Math.max(50, baseInterval / 10);
+            currentInterval = Math.max(baseInterval, currentInterval - step);
+        }
+        return currentInterval;
+    }
+
+    public synchronized int onFailure() {
+        errorEwma += ALPHA * (1 - errorEwma);
+        if (adaptive) backOff();
+        return currentInterval;
+    }
+
+    // 到采集时间时上一帧仍未完成，说明后端或摄像头跟不上当前速率
+    public synchronized int onOverrun() {
+        if (adaptive) backOff();
+        return currentInterval;
+    }
+
+    private void backOff() {
+        currentInterval = (int) Math.min(maxInterval, Math.ceil(currentInterval * BACKOFF_FACTOR));
+    }
+}
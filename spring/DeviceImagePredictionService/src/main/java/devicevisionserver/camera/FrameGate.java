@@ -0,0 +1,81 @@
+package devicevisionserver.camera;
+
+import devicevisionserver.image.FrameSignature;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 上传前的变化检测：与上一张已送达帧的缩略图比较，差异低于阈值则跳过；
+ * 超过关键帧间隔时无论是否变化都发送一次。{@link #check} 只做判断，上传成功后调用 {@link #delivered} 才更新比较基准，
+ * 上传失败或被限流丢弃的帧不会让后续相似帧被跳过。
+ */
+public class FrameGate {
+    private static final Logger logger = LoggerFactory.getLogger(FrameGate.class);
+
+    private final double threshold;
+    private final long keyframeIntervalMillis;
+    private FrameSignature lastSent;
+    private long lastSentAt;
+
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+
+    /**
+     * 通过检测、等待上传结果的帧；signature为null表示无法计算签名
+     */
+    public record Pending(FrameSignature signature, long checkedAt) {
+    }
+
+    public FrameGate(double threshold, long keyframeIntervalMillis) {
+        this.threshold = threshold;
+        this.keyframeIntervalMillis = keyframeIntervalMillis;
+    }
+
+    /**
+     * 判断是否需要上传：需要时返回待确认的帧，跳过时返回null
+     */
+    public Pending check(byte[] imageData) {
+        long now = System.currentTimeMillis();
+        FrameSignature signature;
+        try {
+            signature = FrameSignature.of(imageData);
+        } catch (IOException e) {
+            // 无法计算签名时照常上传，由后端判断图片是否有效
+            logger.debug("计算帧签名失败: {}", e.getMessage());
+            sent.increment();
+            return new Pending(null, now);
+        }
+
+        synchronized (this) {
+            boolean keyframeDue = lastSent == null || now - lastSentAt >= keyframeIntervalMillis;
+            if (!keyframeDue && signature.meanAbsDiff(lastSent) < threshold) {
+                skipped.increment();
+                return null;
+            }
+        }
+        sent.increment();
+        return new Pending(signature, now);
+    }
+
+    /**
+     * 帧已被后端接收，作为之后比较的基准；多帧同时在途时只接受比当前基准更新的帧
+     */
+    public synchronized void delivered(Pending pending) {
+        if (pending.signature() == null || pending.checkedAt() < lastSentAt) {
+            return;
+        }
+        lastSent = pending.signature();
+        lastSentAt = pending.checkedAt();
+    }
+
+    public long sentCount() {
+        return sent.sum();
+    }
+
+    public long skippedCount() {
+        return skipped.sum();
+    }
+}
@@ -0,0 +1,211 @@
+package devicevisionserver.camera;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 上传失败帧的本地缓存：固定大小的内存映射环形文件，按写入顺序读出，满时淘汰最旧的帧。
+ * 文件头记录读写位置，进程重启后未重放的帧仍在。
+ * 文件头(64字节)：magic、容量、头位置、尾位置、头序号、下一序号；
+ * 每条记录：长度(4) + 序号(8) + 采集时间(8) + 图片字节，记录可跨越文件末尾回绕。
+ */
+public class FrameSpool implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(FrameSpool.class);
+    private static final int MAGIC = 0x53504F4C;
+    // 容量用int记录，缓存文件不超过2047MB
+    public static final int MAX_SIZE_MB = 2047;
+    private static final int HEADER_BYTES = 64;
+    private static final int RECORD_HEADER_BYTES = 4 + 8 + 8;
+
+    public record SpooledFrame(long sequence, long capturedAt, byte[] data) {
+    }
+
+    private final Path file;
+    private final int capacity;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final byte[] recordHeader = new byte[RECORD_HEADER_BYTES];
+    private final ByteBuffer recordHeaderView = ByteBuffer.wrap(recordHeader);
+
+    // 头尾位置是只增不减的逻辑偏移，对容量取模得到数据区中的实际位置
+    private long head;
+    private long tail;
+    private long headSequence;
+    private long nextSequence;
+    private long evicted;
+
+    public FrameSpool(Path file, int capacity) throws IOException {
+        if (capacity <= RECORD_HEADER_BYTES) {
+            throw new IllegalArgumentException("缓存容量过小: " + capacity);
+        }
+        this.file = file;
+        this.capacity = capacity;
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) HEADER_BYTES + capacity);
+        if (!loadHeader()) {
+            reset();
+        }
+        if (size() > 0) {
+            logger.info("帧缓存 {} 中有 {} 帧待重放", file, size());
+        }
+    }
+
+    /**
+     * 追加一帧，空间不足时先淘汰最旧的帧；单帧超过缓存容量时返回false
+     */
+    public synchronized boolean append(byte[] data, long capturedAt) {
+        int recordSize = RECORD_HEADER_BYTES + data.length;
+        if (recordSize > capacity) {
+            return false;
+        }
+        while (tail - head + recordSize > capacity) {
+            evictOldest();
+        }
+        recordHeaderView.clear();
+        recordHeaderView.putInt(data.length).putLong(nextSequence).putLong(capturedAt);
+        write(tail, recordHeader, RECORD_HEADER_BYTES);
+        write(tail + RECORD_HEADER_BYTES, data, data.length);
+        tail += recordSize;
+        nextSequence++;
+        writeHeader();
+        return true;
+    }
+
+    /**
+     * 按写入顺序返回最旧的至多max帧，不移除；重放成功后调用commit移除
+     */
+    public synchronized List<SpooledFrame> peek(int max) {
+        List<SpooledFrame> frames = new ArrayList<>(Math.min(max, size()));
+        long position = head;
+        while (position < tail && frames.size() < max) {
+            read(position, recordHeader, RECORD_HEADER_BYTES);
+            recordHeaderView.clear();
+            int length = recordHeaderView.getInt();
+            long sequence = recordHeaderView.getLong();
+            long capturedAt = recordHeaderView.getLong();
+            byte[] data = new byte[length];
+            read(position + RECORD_HEADER_BYTES, data, length);
+            frames.add(new SpooledFrame(sequence, capturedAt, data));
+            position += RECORD_HEADER_BYTES + length;
+        }
+        return frames;
+    }
+
+    /**
+     * 移除序号不大于sequence的帧；这些帧若已被淘汰则不做任何事
+     */
+    public synchronized void commit(long sequence) {
+        boolean changed = false;
+        while (head < tail && headSequence <= sequence) {
+            skipOldest();
+            changed = true;
+        }
+        if (changed) {
+            writeHeader();
+        }
+    }
+
+    public synchronized int size() {
+        return (int) (nextSequence - headSequence);
+    }
+
+    public synchronized long usedBytes() {
+        return tail - head;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    // 因缓存已满被淘汰的帧数（本次运行）
+    public synchronized long evicted() {
+        return evicted;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    private void evictOldest() {
+        skipOldest();
+        evicted++;
+        if (evicted == 1 || evicted % 100 == 0) {
+            logger.warn("帧缓存 {} 已满，累计淘汰最旧帧 {} 帧", file, evicted);
+        }
+    }
+
+    private void skipOldest() {
+        read(head, recordHeader, 4);
+        int length = ByteBuffer.wrap(recordHeader, 0, 4).getInt();
+        head += RECORD_HEADER_BYTES + length;
+        headSequence++;
+    }
+
+    private void write(long position, byte[] src, int length) {
+        int offset = (int) (position % capacity);
+        int first = Math.min(length, capacity - offset);
+        buffer.put(HEADER_BYTES + offset, src, 0, first);
+        if (first < length) {
+            buffer.put(HEADER_BYTES, src, first, length - first);
+        }
+    }
+
+    private void read(long position, byte[] dst, int length) {
+        int offset = (int) (position % capacity);
+        int first = Math.min(length, capacity - offset);
+        buffer.get(HEADER_BYTES + offset, dst, 0, first);
+        if (first < length) {
+            buffer.get(HEADER_BYTES, dst, first, length - first);
+        }
+    }
+
+    private boolean loadHeader() {
+        if (buffer.getInt(0) != MAGIC || buffer.getLong(8) != capacity) {
+            return false;
+        }
+        head = buffer.getLong(16);
+        tail = buffer.getLong(24);
+        headSequence = buffer.getLong(32);
+        nextSequence = buffer.getLong(40);
+        boolean valid = head >= 0 && tail >= head && tail - head <= capacity && nextSequence >= headSequence;
+        if (!valid) {
+            logger.warn("帧缓存 {} 文件头无效，清空缓存", file);
+        }
+        return valid;
+    }
+
+    private void reset() {
+        head = 0;
+        tail = 0;
+        headSequence = 0;
+        nextSequence = 0;
+        buffer.putInt(0, MAGIC);
+        buffer.putLong(8, capacity);
+        writeHeader();
+    }
+
+    private void writeHeader() {
+        buffer.putLong(16, head);
+        buffer.putLong(24, tail);
+        buffer.putLong(32, headSequence);
+        buffer.putLong(40, nextSequence);
+    }
+}
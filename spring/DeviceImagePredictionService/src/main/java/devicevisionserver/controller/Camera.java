@@ -1,6 +1,11 @@
 package devicevisionserver.controller;
 
-import org.opencv.core.Core;
+import devicevisionserver.camera.CameraMetrics;
+import devicevisionserver.camera.CaptureRateController;
+import devicevisionserver.camera.FrameGate;
+import devicevisionserver.camera.FrameSpool;
+import devicevisionserver.image.OpenCvLoader;
+import io.micrometer.core.instrument.Metrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -15,108 +20,364 @@ import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * 单个ESP32摄像头的采集任务。多个摄像头共用同一个HttpClient（连接池、keep-alive）和调度线程池，
+ * 采集与上传全部走异步请求，不占用调度线程；每个摄像头有独立的采集间隔和并发上限。
+ */
 public class Camera {
     private static final String BACKEND_URL = "http://localhost:8080/api/receive";
     private static final String ESP32_BASE_URL = "http://192.168.1.100"; // ESP32的IP
-    private static final String CAMERA_URL = ESP32_BASE_URL + "/capture";
     private static final Logger logger = LoggerFactory.getLogger(Camera.class);
+    private static final Duration FETCH_TIMEOUT = Duration.ofSeconds(5);
+    private static final Duration SEND_TIMEOUT = Duration.ofSeconds(10);
+    private static final int SEND_FAILED = -1;
+    // 被准入控制拒绝（429）且后端下发了adjust_capture_interval，新间隔已执行
+    private static final int THROTTLED = -2;
     private static ScheduledExecutorService scheduler;
-    private static int captureInterval = 2000;
+    private static ExecutorService clientExecutor;
+    private static Camera defaultCamera;
 
     static {
-        try {
-            System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
-        } catch (Exception e) {
-            logger.warn("OpenCV加载失败: {}", e.getMessage());
+        if (!OpenCvLoader.isAvailable()) {
+            logger.warn("OpenCV不可用，帧变化检测使用ImageIO");
         }
     }
 
-    public static void start() {
+    private final String deviceId;
+    private final String baseUrl;
+    private final String captureUrl;
+    private final String backendUrl;
+    private final HttpClient client;
+    private final ScheduledExecutorService cameraScheduler;
+    private final int maxInFlight;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final CaptureRateController rateController;
+    private ScheduledFuture<?> captureTask;
+    private boolean capturing;
+    private volatile FrameGate frameGate;
+    private volatile CameraMetrics metrics;
+    private FrameSpool spool;
+    private int drainBatch;
+    private long drainIntervalMs;
+    private ScheduledFuture<?> drainTask;
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private volatile boolean backendHealthy = true;
+
+    public Camera(String deviceId, String baseUrl, String backendUrl, CaptureRateController rateController,
+                  int maxInFlight, HttpClient client, ScheduledExecutorService cameraScheduler) {
+        this.deviceId = deviceId != null ? deviceId : "esp32_cam_" + baseUrl.hashCode();
+        this.baseUrl = baseUrl;
+        this.captureUrl = baseUrl + "/capture";
+        this.backendUrl = backendUrl;
+        this.rateController = rateController;
+        this.maxInFlight = maxInFlight;
+        this.client = client;
+        this.cameraScheduler = cameraScheduler;
+    }
+
+    /**
+     * 创建可在多个摄像头间共享的HttpClient，HTTP/1.1连接会被复用
+     */
+    public static HttpClient newSharedClient(ExecutorService executor) {
+        return HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(3))
+                .executor(executor)
+                .build();
+    }
+
+    public static synchronized void start() {
         if (scheduler != null && !scheduler.isShutdown()) {
             logger.warn("摄像头服务已启动");
             return;
         }
         scheduler = Executors.newSingleThreadScheduledExecutor();
-        scheduler.scheduleAtFixedRate(Camera::captureAndSend, 0, captureInterval, TimeUnit.MILLISECONDS);
-        logger.info("服务启动，间隔: {}ms", captureInterval);
+        clientExecutor = Executors.newCachedThreadPool();
+        defaultCamera = new Camera(null, ESP32_BASE_URL, BACKEND_URL,
+                new CaptureRateController(2000, 30000, 1000, true), 1,
+                newSharedClient(clientExecutor), scheduler);
+        defaultCamera.setMetrics(new CameraMetrics(Metrics.globalRegistry, defaultCamera.getDeviceId()));
+        defaultCamera.startCapture(0);
     }
 
-    public static void stop() {
+    public static synchronized void stop() {
         if (scheduler != null) {
             scheduler.shutdown();
+            clientExecutor.shutdown();
             logger.info("服务已停止");
         }
     }
 
-    private static void captureAndSend() {
-        try {
-            byte[] imageData = fetchImage();
-            if (imageData == null) return;
+    public synchronized void startCapture(long initialDelay) {
+        capturing = true;
+        scheduleNext(initialDelay);
+        if (spool != null && drainTask == null) {
+            drainTask = cameraScheduler.scheduleWithFixedDelay(this::drainSpool,
+                    drainIntervalMs, drainIntervalMs, TimeUnit.MILLISECONDS);
+        }
+        logger.info("摄像头 {} 启动，间隔: {}ms", deviceId, rateController.currentInterval());
+    }
 
-            String base64 = ImageUtil.convertToBase64(imageData);
-            if (base64 == null) return;
+    public synchronized void stopCapture() {
+        capturing = false;
+        if (captureTask != null) {
+            captureTask.cancel(false);
+            logger.info("摄像头 {} 已停止", deviceId);
+        }
+        if (drainTask != null) {
+            drainTask.cancel(false);
+            drainTask = null;
+        }
+    }
 
-            String deviceId = "esp32_cam_" + ESP32_BASE_URL.hashCode();
-            sendToBackend(base64, deviceId);
-        } catch (Exception e) {
-            logger.error("处理失败: {}", e.getMessage());
+    public String getDeviceId() { return deviceId; }
+
+    public CaptureRateController getRateController() { return rateController; }
+
+    public FrameGate getFrameGate() { return frameGate; }
+    public void setFrameGate(FrameGate frameGate) { this.frameGate = frameGate; }
+
+    public void setMetrics(CameraMetrics metrics) { this.metrics = metrics; }
+
+    public synchronized FrameSpool getSpool() { return spool; }
+
+    /**
+     * 启用失败帧缓存：每隔drainIntervalMs最多重放drainBatch帧，需在startCapture之前设置
+     */
+    public synchronized void setSpool(FrameSpool spool, int drainBatch, long drainIntervalMs) {
+        this.spool = spool;
+        this.drainBatch = Math.max(1, drainBatch);
+        this.drainIntervalMs = Math.max(100, drainIntervalMs);
+    }
+
+    // 每次采集后按当前间隔安排下一次，间隔变化（后端指令或自适应调整）在下一次采集时即生效
+    private synchronized void scheduleNext(long delay) {
+        if (!capturing) return;
+        captureTask = cameraScheduler.schedule(this::tick, delay, TimeUnit.MILLISECONDS);
+    }
+
+    // 后端指令要求立即生效时，取消已安排的采集并按新间隔重新安排
+    private synchronized void reschedule() {
+        if (captureTask != null) {
+            captureTask.cancel(false);
         }
+        scheduleNext(rateController.currentInterval());
     }
 
-    private static byte[] fetchImage() {
-        try {
-            HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(3)).build();
-            HttpRequest request = HttpRequest.newBuilder().uri(URI.create(CAMERA_URL)).GET().build();
-            HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
-            return response.statusCode() == 200 ? response.body() : null;
-        } catch (Exception e) {
-            logger.error("获取图像失败: {}", e.getMessage());
-            return null;
+    private void tick() {
+        scheduleNext(rateController.currentInterval());
+        captureAndSend();
+    }
+
+    private void captureAndSend() {
+        // 上一次采集/上传尚未完成且已达并发上限时跳过本次，避免慢摄像头或慢后端导致任务堆积
+        if (inFlight.incrementAndGet() > maxInFlight) {
+            inFlight.decrementAndGet();
+            int interval = rateController.onOverrun();
+            logger.debug("摄像头 {} 上次任务未完成，跳过本次采集，间隔调整为 {}ms", deviceId, interval);
+            return;
         }
+        fetchImage()
+                .thenCompose(imageData -> {
+                    if (imageData == null) return CompletableFuture.completedFuture(null);
+                    FrameGate gate = frameGate;
+                    FrameGate.Pending pending = gate != null ? gate.check(imageData) : null;
+                    if (gate != null && pending == null) {
+                        logger.debug("摄像头 {} 画面无明显变化，跳过上传", deviceId);
+                        return CompletableFuture.completedFuture(null);
+                    }
+                    String base64 = ImageUtil.convertToBase64(imageData);
+                    if (base64 == null) return CompletableFuture.completedFuture(null);
+                    // 只有后端接收后才作为变化检测的基准
+                    return sendToBackend(imageData, base64).thenAccept(status -> {
+                        if (status == 200 && pending != null) {
+                            gate.delivered(pending);
+                        }
+                    });
+                })
+                .whenComplete((ignored, e) -> {
+                    inFlight.decrementAndGet();
+                    if (e != null) {
+                        logger.error("处理失败: {}", e.getMessage());
+                    }
+                });
     }
 
-    private static void sendToBackend(String base64Image, String deviceId) {
-        String jsonBody = "{"
+    private CompletableFuture<byte[]> fetchImage() {
+        HttpRequest request = HttpRequest.newBuilder().uri(URI.create(captureUrl)).timeout(FETCH_TIMEOUT).GET().build();
+        long start = System.nanoTime();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                .whenComplete((response, e) -> recordFetch(System.nanoTime() - start))
+                .thenApply(response -> response.statusCode() == 200 ? response.body() : null)
+                .exceptionally(e -> {
+                    logger.error("获取图像失败: {}", e.getMessage());
+                    return null;
+                });
+    }
+
+    static String buildJsonBody(String deviceId, String base64Image) {
+        return "{"
                 + "\"username\":\"iot_device\","
                 + "\"token\":\"valid_token\","
                 + "\"deviceId\":\"" + deviceId + "\","
                 + "\"imageData\":\"" + base64Image + "\""
                 + "}";
+    }
 
-        try {
-            HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(BACKEND_URL))
-                    .header("Content-Type", "application/json")
-                    .POST(HttpRequest.BodyPublishers.ofString(jsonBody, StandardCharsets.UTF_8))
-                    .build();
-
-            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
-            if (response.statusCode() == 200) {
+    // 发送一帧并处理结果，返回后端状态码
+    private CompletableFuture<Integer> sendToBackend(byte[] imageData, String base64Image) {
+        long start = System.nanoTime();
+        return postFrame(base64Image).thenApply(status -> {
+            long latencyMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            if (status == 200) {
                 logger.info("发送成功，设备: {}", deviceId);
-                handleBackendResponse(response.body(), deviceId);
-            } else {
-                logger.error("发送失败，状态: {}", response.statusCode());
+                backendHealthy = true;
+                rateController.onSuccess(latencyMillis);
+                return status;
             }
-        } catch (Exception e) {
-            logger.error("发送异常: {}", e.getMessage());
+            // 准入限流：已按指令设置限流期间的间隔下限，该帧直接丢弃；缓存重放只会加重后端积压，也不叠加退避
+            if (status == THROTTLED) {
+                logger.info("摄像头 {} 被后端限流，丢弃本帧", deviceId);
+                return status;
+            }
+            rateController.onFailure();
+            if (retryable(status)) {
+                backendHealthy = false;
+                spoolFrame(imageData);
+            }
+            return status;
+        });
+    }
+
+    // 发送一帧，返回后端状态码（HTTP 200时取响应体中的statusCode），网络异常时返回SEND_FAILED
+    private CompletableFuture<Integer> postFrame(String base64Image) {
+        String jsonBody = buildJsonBody(deviceId, base64Image);
+
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(backendUrl))
+                .timeout(SEND_TIMEOUT)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(jsonBody, StandardCharsets.UTF_8))
+                .build();
+
+        long start = System.nanoTime();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .whenComplete((response, e) -> recordSend(System.nanoTime() - start))
+                .thenApply(response -> {
+                    // 429响应体中带有调整采集间隔的指令，和200一样解析执行
+                    int code = response.statusCode();
+                    int status = code == 200 || code == 429 ? handleBackendResponse(response.body(), code) : code;
+                    if (status != 200 && status != THROTTLED) {
+                        logger.error("发送失败，状态: {}", status);
+                    }
+                    return status;
+                })
+                .exceptionally(e -> {
+                    logger.error("发送异常: {}", e.getMessage());
+                    return SEND_FAILED;
+                });
+    }
+
+    // 网络异常和服务端错误（含存储不可用的503）可以稍后重试；429是后端主动限流，4xx说明帧本身有问题，重放都不应进行
+    private static boolean retryable(int status) {
+        return status == SEND_FAILED || status >= 500;
+    }
+
+    private void spoolFrame(byte[] imageData) {
+        FrameSpool current = getSpool();
+        if (current == null) return;
+        if (current.append(imageData, System.currentTimeMillis())) {
+            logger.debug("摄像头 {} 帧已缓存，待重放: {}", deviceId, current.size());
+        } else {
+            logger.warn("摄像头 {} 帧大小超过缓存容量，丢弃", deviceId);
         }
     }
 
-    private static void handleBackendResponse(String responseBody, String deviceId) {
+    /**
+     * 按缓存顺序重放：后端正常时每次最多drainBatch帧，逐帧发送；后端仍异常时每次只试探一帧，
+     * 避免恢复瞬间所有摄像头把积压一次性压到后端。遇到可重试的失败或被限流时立即停止，剩余帧留到下一次。
+     */
+    private void drainSpool() {
+        FrameSpool current = getSpool();
+        if (current == null || current.size() == 0 || !draining.compareAndSet(false, true)) {
+            return;
+        }
+        List<FrameSpool.SpooledFrame> frames = current.peek(backendHealthy ? drainBatch : 1);
+        replay(current, frames, 0).whenComplete((ignored, e) -> {
+            draining.set(false);
+            if (e != null) {
+                logger.error("重放缓存帧失败: {}", e.getMessage());
+            }
+        });
+    }
+
+    private CompletableFuture<Void> replay(FrameSpool current, List<FrameSpool.SpooledFrame> frames, int index) {
+        if (index >= frames.size()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        FrameSpool.SpooledFrame frame = frames.get(index);
+        String base64 = ImageUtil.convertToBase64(frame.data());
+        if (base64 == null) {
+            current.commit(frame.sequence());
+            return replay(current, frames, index + 1);
+        }
+        return postFrame(base64).thenCompose(status -> {
+            if (retryable(status)) {
+                backendHealthy = false;
+                return CompletableFuture.completedFuture(null);
+            }
+            // 被限流时停止本轮重放，缓存帧留到下一次，后端本身并无异常
+            if (status == THROTTLED || status == 429) {
+                return CompletableFuture.completedFuture(null);
+            }
+            if (status == 200) {
+                backendHealthy = true;
+                logger.info("摄像头 {} 重放缓存帧 {} 成功，剩余: {}", deviceId, frame.sequence(), current.size() - 1);
+            } else {
+                logger.warn("摄像头 {} 缓存帧 {} 被后端拒绝，状态: {}，丢弃", deviceId, frame.sequence(), status);
+            }
+            current.commit(frame.sequence());
+            return replay(current, frames, index + 1);
+        });
+    }
+
+    private void recordFetch(long nanos) {
+        CameraMetrics current = metrics;
+        if (current != null) current.recordFetch(nanos);
+    }
+
+    private void recordSend(long nanos) {
+        CameraMetrics current = metrics;
+        if (current != null) current.recordSend(nanos);
+    }
+
+    // 执行后端下发的指令，返回响应体中的状态码，响应体中没有时返回HTTP状态码；429并带有调整间隔指令时返回THROTTLED
+    private int handleBackendResponse(String responseBody, int httpStatus) {
         try (JsonReader reader = Json.createReader(new StringReader(responseBody))) {
             JsonObject responseJson = reader.readObject();
-            if (!responseJson.containsKey("command")) return;
+            int statusCode = responseJson.getInt("statusCode", httpStatus);
+            if (!responseJson.containsKey("command")) return statusCode;
 
             JsonObject command = responseJson.getJsonObject("command");
             String type = command.getString("type");
 
             switch (type) {
                 case "adjust_capture_interval":
+                    // 429附带的间隔只在限流期间生效，其他响应中的指令修改基础间隔
+                    if (statusCode == 429) {
+                        throttleCaptureInterval(command.getInt("interval"));
+                        return THROTTLED;
+                    }
                     adjustCaptureInterval(command.getInt("interval"));
                     break;
                 case "set_resolution":
@@ -128,41 +389,51 @@ public class Camera {
                 default:
                     logger.warn("未知指令: {}", type);
             }
+            return statusCode;
         } catch (Exception e) {
             logger.error("解析响应失败: {}", e.getMessage());
+            return httpStatus;
         }
     }
 
-    private static void adjustCaptureInterval(int newInterval) {
+    private void adjustCaptureInterval(int newInterval) {
         if (newInterval < 1000) {
             logger.warn("间隔不能小于1000ms");
             return;
         }
-        captureInterval = newInterval;
+        rateController.setBaseInterval(newInterval);
+        reschedule();
         logger.info("间隔调整为: {}ms", newInterval);
     }
 
-    private static void setResolution(int width, int height) {
-        try {
-            String url = ESP32_BASE_URL + "/set-resolution?width=" + width + "&height=" + height;
-            HttpClient.newHttpClient().send(HttpRequest.newBuilder().uri(URI.create(url)).GET().build(), HttpResponse.BodyHandlers.discarding());
-            logger.info("请求调整分辨率: {}x{}", width, height);
-        } catch (Exception e) {
-            logger.error("调整分辨率失败: {}", e.getMessage());
-        }
+    private void throttleCaptureInterval(int interval) {
+        if (interval <= 0) return;
+        rateController.throttle(interval);
+        reschedule();
+        logger.info("摄像头 {} 被限流，间隔暂时不低于 {}ms", deviceId, interval);
     }
 
-    private static void takeSnapshot() {
-        try {
-            String url = ESP32_BASE_URL + "/take-snapshot";
-            HttpClient.newHttpClient().send(HttpRequest.newBuilder().uri(URI.create(url)).GET().build(), HttpResponse.BodyHandlers.discarding());
-            logger.info("触发抓拍");
-        } catch (Exception e) {
-            logger.error("抓拍失败: {}", e.getMessage());
-        }
+    private void setResolution(int width, int height) {
+        String url = baseUrl + "/set-resolution?width=" + width + "&height=" + height;
+        client.sendAsync(HttpRequest.newBuilder().uri(URI.create(url)).timeout(FETCH_TIMEOUT).GET().build(), HttpResponse.BodyHandlers.discarding())
+                .thenRun(() -> logger.info("请求调整分辨率: {}x{}", width, height))
+                .exceptionally(e -> {
+                    logger.error("调整分辨率失败: {}", e.getMessage());
+                    return null;
+                });
+    }
+
+    private void takeSnapshot() {
+        String url = baseUrl + "/take-snapshot";
+        client.sendAsync(HttpRequest.newBuilder().uri(URI.create(url)).timeout(FETCH_TIMEOUT).GET().build(), HttpResponse.BodyHandlers.discarding())
+                .thenRun(() -> logger.info("触发抓拍"))
+                .exceptionally(e -> {
+                    logger.error("抓拍失败: {}", e.getMessage());
+                    return null;
+                });
     }
 
-    private static class ImageUtil {
+    static class ImageUtil {
         private static final Logger logger = LoggerFactory.getLogger(ImageUtil.class);
 
         public static String convertToBase64(byte[] imageData) {
@@ -178,4 +449,4 @@ public class Camera {
             }
         }
     }
-}
\ No newline at end of file
+}
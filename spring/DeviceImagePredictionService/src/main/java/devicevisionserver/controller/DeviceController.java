@@ -1,28 +1,45 @@
 package devicevisionserver.controller;
 
 import devicevisionserver.ImageRecognitionService;
+import devicevisionserver.admission.AdmissionRejectedException;
+import devicevisionserver.admission.AdmissionStats;
+import devicevisionserver.admission.DeviceAdmission;
+import devicevisionserver.metrics.IngestMetrics;
+import devicevisionserver.model.Command;
 import devicevisionserver.model.DeviceData;
 import devicevisionserver.model.Response;
+import devicevisionserver.recognition.RecognitionCacheStats;
+import devicevisionserver.recognition.RecognitionJob;
+import devicevisionserver.recognition.RecognitionJobService;
+import devicevisionserver.recognition.RecognitionResultCache;
+import devicevisionserver.storage.ImageStorageService;
+import devicevisionserver.storage.StorageBusyException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestPart;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
 
-import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import java.io.EOFException;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.text.SimpleDateFormat;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.Arrays;
 import java.util.Base64;
-import java.util.Date;
-import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/api")
@@ -30,71 +47,397 @@ public class DeviceController {
 
     private static final Logger logger = LoggerFactory.getLogger(DeviceController.class);
     private static final String[] REQUIRED_FIELDS = {"username", "token", "deviceId", "imageData"};
+    private static final String[] REQUIRED_HEADERS = {"username", "token", "deviceId"};
+    private static final String DATA_URI_MARKER = ";base64,";
 
     @Autowired
     private ImageRecognitionService imageRecognitionService;
 
-    @Value("${image.storage.path:./uploaded-images}")
-    private String imageStoragePath;
+    @Autowired
+    private ImageStorageService imageStorageService;
+
+    @Autowired
+    private RecognitionJobService recognitionJobService;
+
+    @Autowired
+    private IngestMetrics ingestMetrics;
+
+    @Autowired
+    private DeviceAdmission deviceAdmission;
+
+    @Autowired
+    private RecognitionResultCache recognitionResultCache;
+
+    @Value("${image.max-bytes:10485760}")
+    private int maxImageBytes;
 
     @PostMapping("/receive")
-    public Response handlePrediction(@RequestBody DeviceData requestData) {
-        logger.info("收到设备 {} 请求，用户: {}", requestData.getDeviceId(), requestData.getUsername());
+    public ResponseEntity<Response> handlePrediction(@RequestBody DeviceData requestData) {
+        String deviceId = requestData.getDeviceId();
+        logger.info("收到设备 {} 请求，用户: {}", deviceId, requestData.getUsername());
+        ingestMetrics.received(deviceId);
 
-        StringBuilder missingFields = new StringBuilder();
-        for (String field : REQUIRED_FIELDS) {
-            String value = getFieldValue(requestData, field);
-            if (isEmpty(value)) {
-                missingFields.append(field).append(", ");
+        Response invalid = checkRequiredFields(requestData, REQUIRED_FIELDS);
+        if (invalid != null) {
+            ingestMetrics.rejected(deviceId);
+            return ResponseEntity.ok(invalid);
+        }
+
+        try (DeviceAdmission.Permit permit = deviceAdmission.acquire(deviceId)) {
+            byte[] imageBytes;
+            try {
+                imageBytes = decodeTimed(requestData.getImageData());
+            } catch (IllegalArgumentException e) {
+                logger.error("解码失败", e);
+                ingestMetrics.rejected(deviceId);
+                return ResponseEntity.ok(new Response(400, "图片格式错误"));
             }
+            return ResponseEntity.ok(processFrame(imageBytes, deviceId));
+        } catch (AdmissionRejectedException e) {
+            return tooManyRequests(deviceId, e);
         }
-        if (!missingFields.isEmpty()) {
-            String errorMsg = "缺少字段: " + missingFields.substring(0, missingFields.length() - 2);
-            logger.warn("参数错误: {}", errorMsg);
-            return new Response(400, errorMsg);
+    }
+
+    /**
+     * 异步识别：保存图片并提交识别任务后立即返回202和任务ID，结果通过 /api/jobs/{jobId} 查询
+     */
+    @PostMapping("/receive/async")
+    public ResponseEntity<?> submitPrediction(@RequestBody DeviceData requestData) {
+        String deviceId = requestData.getDeviceId();
+        logger.info("收到设备 {} 异步请求，用户: {}", deviceId, requestData.getUsername());
+        ingestMetrics.received(deviceId);
+
+        Response invalid = checkRequiredFields(requestData, REQUIRED_FIELDS);
+        if (invalid != null) {
+            ingestMetrics.rejected(deviceId);
+            return ResponseEntity.badRequest().body(invalid);
         }
 
-        try {
-            String base64Image = requestData.getImageData();
-            String cleanBase64 = base64Image.replaceAll("^data:image/.*;base64,", "");
-            byte[] imageBytes = Base64.getDecoder().decode(cleanBase64);
+        try (DeviceAdmission.Permit permit = deviceAdmission.acquire(deviceId)) {
+            byte[] imageBytes;
+            try {
+                imageBytes = decodeTimed(requestData.getImageData());
+            } catch (IllegalArgumentException e) {
+                logger.error("解码失败", e);
+                ingestMetrics.rejected(deviceId);
+                return ResponseEntity.badRequest().body(new Response(400, "图片格式错误"));
+            }
+            return submitFrame(imageBytes, deviceId);
+        } catch (AdmissionRejectedException e) {
+            return tooManyRequests(deviceId, e);
+        }
+    }
+
+    /**
+     * 二进制上传：请求体直接是JPEG字节，设备信息放在请求头中，避免Base64编码带来的多份内存拷贝
+     */
+    @PostMapping(value = "/receive/binary",
+            consumes = {MediaType.IMAGE_JPEG_VALUE, MediaType.APPLICATION_OCTET_STREAM_VALUE})
+    public ResponseEntity<Response> handleBinaryPrediction(@RequestHeader(value = "X-Username", required = false) String username,
+                                                           @RequestHeader(value = "X-Account", required = false) String account,
+                                                           @RequestHeader(value = "X-Token", required = false) String token,
+                                                           @RequestHeader(value = "X-Device-Id", required = false) String deviceId,
+                                                           HttpServletRequest request) {
+        DeviceData metadata = headerMetadata(username, account, token, deviceId);
+        ingestMetrics.received(deviceId);
+        Response invalid = validateMetadata(metadata);
+        if (invalid != null) {
+            ingestMetrics.rejected(deviceId);
+            return ResponseEntity.ok(invalid);
+        }
+
+        // 拿到名额后才读取请求体，被拒绝的请求不占用读取和内存
+        try (DeviceAdmission.Permit permit = deviceAdmission.acquire(deviceId)) {
+            byte[] imageBytes;
+            try (InputStream body = request.getInputStream()) {
+                imageBytes = readFrame(body, request.getContentLengthLong());
+            } catch (IllegalArgumentException e) {
+                logger.warn("图片读取失败: {}", e.getMessage());
+                ingestMetrics.rejected(deviceId);
+                return ResponseEntity.ok(new Response(413, e.getMessage()));
+            } catch (IOException e) {
+                logger.error("读取请求体失败", e);
+                ingestMetrics.rejected(deviceId);
+                return ResponseEntity.ok(new Response(400, "读取图片失败: " + e.getMessage()));
+            }
+            return ResponseEntity.ok(processFrame(imageBytes, deviceId));
+        } catch (AdmissionRejectedException e) {
+            return tooManyRequests(deviceId, e);
+        }
+    }
 
-            String savedFilePath = saveImage(imageBytes, requestData.getDeviceId());
-            logger.info("图片保存: {}", savedFilePath);
+    /**
+     * 二进制上传（multipart）：meta部分为不含imageData的设备信息JSON，image部分为图片文件
+     */
+    @PostMapping(value = "/receive/binary", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<Response> handleMultipartPrediction(@RequestPart("meta") DeviceData metadata,
+                                                              @RequestPart("image") MultipartFile image) {
+        String deviceId = metadata != null ? metadata.getDeviceId() : null;
+        ingestMetrics.received(deviceId);
+        Response invalid = validateMetadata(metadata);
+        if (invalid != null) {
+            ingestMetrics.rejected(deviceId);
+            return ResponseEntity.ok(invalid);
+        }
 
-            String recognitionResult = imageRecognitionService.recognize(imageBytes);
+        try (DeviceAdmission.Permit permit = deviceAdmission.acquire(deviceId)) {
+            byte[] imageBytes;
+            try (InputStream body = image.getInputStream()) {
+                imageBytes = readFrame(body, image.getSize());
+            } catch (IllegalArgumentException e) {
+                logger.warn("图片读取失败: {}", e.getMessage());
+                ingestMetrics.rejected(deviceId);
+                return ResponseEntity.ok(new Response(413, e.getMessage()));
+            } catch (IOException e) {
+                logger.error("读取上传文件失败", e);
+                ingestMetrics.rejected(deviceId);
+                return ResponseEntity.ok(new Response(400, "读取图片失败: " + e.getMessage()));
+            }
+            return ResponseEntity.ok(processFrame(imageBytes, deviceId));
+        } catch (AdmissionRejectedException e) {
+            return tooManyRequests(deviceId, e);
+        }
+    }
 
-            return new Response(200, "处理成功！结果: " + recognitionResult + "，路径: " + savedFilePath);
+    /**
+     * 二进制上传的异步版本，请求头与 /receive/binary 相同
+     */
+    @PostMapping(value = "/receive/binary/async",
+            consumes = {MediaType.IMAGE_JPEG_VALUE, MediaType.APPLICATION_OCTET_STREAM_VALUE})
+    public ResponseEntity<?> submitBinaryPrediction(@RequestHeader(value = "X-Username", required = false) String username,
+                                                    @RequestHeader(value = "X-Account", required = false) String account,
+                                                    @RequestHeader(value = "X-Token", required = false) String token,
+                                                    @RequestHeader(value = "X-Device-Id", required = false) String deviceId,
+                                                    HttpServletRequest request) {
+        DeviceData metadata = headerMetadata(username, account, token, deviceId);
+        ingestMetrics.received(deviceId);
+        Response invalid = validateMetadata(metadata);
+        if (invalid != null) {
+            ingestMetrics.rejected(deviceId);
+            return ResponseEntity.badRequest().body(invalid);
+        }
+
+        try (DeviceAdmission.Permit permit = deviceAdmission.acquire(deviceId)) {
+            byte[] imageBytes;
+            try (InputStream body = request.getInputStream()) {
+                imageBytes = readFrame(body, request.getContentLengthLong());
+            } catch (IllegalArgumentException e) {
+                logger.warn("图片读取失败: {}", e.getMessage());
+                ingestMetrics.rejected(deviceId);
+                return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(new Response(413, e.getMessage()));
+            } catch (IOException e) {
+                logger.error("读取请求体失败", e);
+                ingestMetrics.rejected(deviceId);
+                return ResponseEntity.badRequest().body(new Response(400, "读取图片失败: " + e.getMessage()));
+            }
+            return submitFrame(imageBytes, deviceId);
+        } catch (AdmissionRejectedException e) {
+            return tooManyRequests(deviceId, e);
+        }
+    }
+
+    // 各设备的排队与拒绝情况
+    @GetMapping("/admission/stats")
+    public AdmissionStats admissionStats() {
+        return deviceAdmission.stats();
+    }
+
+    // 识别结果缓存命中率与抽样复核结果
+    @GetMapping("/recognition/cache/stats")
+    public RecognitionCacheStats recognitionCacheStats() {
+        return recognitionResultCache.stats();
+    }
+
+    /**
+     * 设备超出配额：返回429，并通过adjust_capture_interval指令让摄像头在限流期间按不低于建议间隔的速率采集
+     */
+    private ResponseEntity<Response> tooManyRequests(String deviceId, AdmissionRejectedException e) {
+        int interval = e.getSuggestedIntervalMillis();
+        logger.warn("{}，建议采集间隔 {}ms", e.getMessage(), interval);
+        ingestMetrics.rejected(deviceId);
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(TimeUnit.MILLISECONDS.toSeconds(interval + 999)))
+                .body(new Response(429, e.getMessage() + "，请将采集间隔调整为" + interval + "ms",
+                        Command.adjustCaptureInterval(interval)));
+    }
 
-        } catch (IllegalArgumentException e) {
-            logger.error("解码失败", e);
-            return new Response(400, "图片格式错误");
+    /**
+     * 先占用识别名额再保存图片：队列已满时直接返回429，图片不落盘也不生成派生图，设备重试不会留下重复副本
+     */
+    private ResponseEntity<?> submitFrame(byte[] imageBytes, String deviceId) {
+        try (RecognitionJobService.Reservation reservation = recognitionJobService.reserve()) {
+            if (reservation == null) {
+                return recognitionBusy(deviceId);
+            }
+
+            String imageId;
+            try {
+                imageId = storeTimed(imageBytes, deviceId);
+            } catch (StorageBusyException e) {
+                logger.warn("存储繁忙，设备: {}", deviceId);
+                ingestMetrics.rejected(deviceId);
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(new Response(503, e.getMessage()));
+            } catch (IOException e) {
+                logger.warn("保存失败: {}", e.getMessage());
+                ingestMetrics.rejected(deviceId);
+                return ResponseEntity.badRequest().body(new Response(400, "保存失败: " + e.getMessage()));
+            }
+
+            RecognitionJob job;
+            try {
+                job = recognitionJobService.submit(reservation, deviceId, imageBytes, imageId);
+            } catch (RejectedExecutionException e) {
+                return recognitionBusy(deviceId);
+            }
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/jobs/" + job.getJobId()))
+                    .body(job);
+        }
+    }
+
+    // 识别队列已满：返回429，按队列排空时间提示重试
+    private ResponseEntity<Response> recognitionBusy(String deviceId) {
+        long retryMillis = recognitionJobService.suggestedRetryMillis();
+        logger.warn("识别队列已满，设备: {}，建议 {}ms 后重试", deviceId, retryMillis);
+        ingestMetrics.rejected(deviceId);
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(TimeUnit.MILLISECONDS.toSeconds(retryMillis + 999)))
+                .body(new Response(429, "识别队列已满，请" + retryMillis + "ms后重试"));
+    }
+
+    private Response processFrame(byte[] imageBytes, String deviceId) {
+        try {
+            String imageId = storeTimed(imageBytes, deviceId);
+            logger.info("图片已加入存储队列: {}", imageId);
+
+            long start = System.nanoTime();
+            String recognitionResult = imageRecognitionService.recognize(deviceId, imageBytes);
+            ingestMetrics.recordRecognize(System.nanoTime() - start);
+
+            return new Response(200, "处理成功！结果: " + recognitionResult + "，图片ID: " + imageId);
+
+        } catch (StorageBusyException e) {
+            logger.warn("存储繁忙，设备: {}", deviceId);
+            ingestMetrics.rejected(deviceId);
+            return new Response(503, e.getMessage());
         } catch (IOException e) {
-            logger.error("保存失败", e);
-            return new Response(500, "保存失败: " + e.getMessage());
+            logger.warn("保存失败: {}", e.getMessage());
+            ingestMetrics.rejected(deviceId);
+            return new Response(400, "保存失败: " + e.getMessage());
         } catch (Exception e) {
             logger.error("处理异常", e);
+            ingestMetrics.failed(deviceId);
             return new Response(500, "处理失败: " + e.getMessage());
         }
     }
 
-    private String saveImage(byte[] imageBytes, String deviceId) throws IOException {
-        String dateDir = new SimpleDateFormat("yyyy/MM/dd").format(new Date());
-        Path storagePath = Paths.get(imageStoragePath, deviceId, dateDir);
-        Files.createDirectories(storagePath);
+    private Response validateMetadata(DeviceData metadata) {
+        if (metadata == null) {
+            return new Response(400, "缺少设备信息");
+        }
+        logger.info("收到设备 {} 二进制请求，用户: {}", metadata.getDeviceId(), metadata.getUsername());
+        return checkRequiredFields(metadata, REQUIRED_HEADERS);
+    }
+
+    private Response checkRequiredFields(DeviceData data, String[] requiredFields) {
+        StringBuilder missingFields = new StringBuilder();
+        for (String field : requiredFields) {
+            String value = getFieldValue(data, field);
+            if (isEmpty(value)) {
+                missingFields.append(field).append(", ");
+            }
+        }
+        if (!missingFields.isEmpty()) {
+            String errorMsg = "缺少字段: " + missingFields.substring(0, missingFields.length() - 2);
+            logger.warn("参数错误: {}", errorMsg);
+            return new Response(400, errorMsg);
+        }
+        return null;
+    }
+
+    private DeviceData headerMetadata(String username, String account, String token, String deviceId) {
+        DeviceData metadata = new DeviceData();
+        metadata.setUsername(username);
+        metadata.setAccount(account);
+        metadata.setToken(token);
+        metadata.setDeviceId(deviceId);
+        return metadata;
+    }
 
-        String fileName = UUID.randomUUID() + ".jpg";
-        Path filePath = storagePath.resolve(fileName);
+    private byte[] decodeTimed(String base64Image) {
+        long start = System.nanoTime();
+        try {
+            return decodeBase64Image(base64Image);
+        } finally {
+            ingestMetrics.recordDecode(System.nanoTime() - start);
+        }
+    }
 
-        try (ByteArrayInputStream inputStream = new ByteArrayInputStream(imageBytes)) {
-            BufferedImage image = ImageIO.read(inputStream);
-            if (image == null) {
-                throw new IOException("无效图片格式");
+    private String storeTimed(byte[] imageBytes, String deviceId) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return imageStorageService.store(imageBytes, deviceId);
+        } finally {
+            ingestMetrics.recordStore(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * 去掉data URI前缀后解码，只在存在前缀时截取，不再对整段Base64跑正则
+     */
+    static byte[] decodeBase64Image(String base64Image) {
+        if (base64Image.startsWith("data:image/")) {
+            int marker = base64Image.indexOf(DATA_URI_MARKER);
+            if (marker >= 0) {
+                base64Image = base64Image.substring(marker + DATA_URI_MARKER.length());
             }
-            ImageIO.write(image, "jpg", filePath.toFile());
         }
+        return Base64.getDecoder().decode(base64Image);
+    }
 
-        return filePath.toString();
+    /**
+     * 按Content-Length一次性分配数组读取请求体；长度未知时按块扩容
+     */
+    private byte[] readFrame(InputStream in, long contentLength) throws IOException {
+        if (contentLength > maxImageBytes) {
+            throw new IllegalArgumentException("图片过大: " + contentLength + "字节");
+        }
+        if (contentLength == 0) {
+            throw new IOException("图片为空");
+        }
+        if (contentLength > 0) {
+            byte[] buffer = new byte[(int) contentLength];
+            int offset = 0;
+            while (offset < buffer.length) {
+                int read = in.read(buffer, offset, buffer.length - offset);
+                if (read < 0) {
+                    throw new EOFException("请求体不完整: " + offset + "/" + contentLength);
+                }
+                offset += read;
+            }
+            return buffer;
+        }
+
+        byte[] buffer = new byte[Math.min(64 * 1024, maxImageBytes)];
+        int size = 0;
+        int read;
+        while ((read = in.read(buffer, size, buffer.length - size)) >= 0) {
+            size += read;
+            if (size == buffer.length) {
+                if (size >= maxImageBytes) {
+                    // 正好达到上限的请求体是合法的，只有后面还有数据才算超限
+                    if (in.read() >= 0) {
+                        throw new IllegalArgumentException("图片过大: 超过" + maxImageBytes + "字节");
+                    }
+                    break;
+                }
+                buffer = Arrays.copyOf(buffer, Math.min(buffer.length * 2, maxImageBytes));
+            }
+        }
+        if (size == 0) {
+            throw new IOException("图片为空");
+        }
+        return Arrays.copyOf(buffer, size);
     }
 
     private String getFieldValue(DeviceData data, String field) {
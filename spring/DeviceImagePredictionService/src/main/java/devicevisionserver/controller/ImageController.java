@@ -0,0 +1,73 @@
+package devicevisionserver.controller;
+
+import devicevisionserver.image.ImageFormat;
+import devicevisionserver.storage.DerivativeService;
+import devicevisionserver.storage.ImageStorageService;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+@RestController
+@RequestMapping("/api/images")
+public class ImageController {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageController.class);
+
+    @Autowired
+    private ImageStorageService imageStorageService;
+
+    @Autowired
+    private DerivativeService derivativeService;
+
+    /**
+     * 按存储返回的图片ID读取图片。指定 size 时返回最长边不小于 size 的最小派生图，
+     * 没有合适的派生图时返回原图；段文件存储直接把映射区写入响应，不经过堆内复制
+     */
+    @GetMapping
+    public void getImage(@RequestParam("id") String id,
+                         @RequestParam(value = "size", required = false) Integer size,
+                         HttpServletResponse response) throws IOException {
+        ByteBuffer image;
+        try {
+            if (size != null) {
+                Path variant = derivativeService.find(id, size);
+                if (variant != null) {
+                    response.setContentType(MediaType.IMAGE_JPEG_VALUE);
+                    response.setContentLengthLong(Files.size(variant));
+                    Files.copy(variant, response.getOutputStream());
+                    return;
+                }
+            }
+            image = imageStorageService.read(id);
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+            return;
+        }
+        if (image == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, "图片不存在");
+            return;
+        }
+
+        ImageFormat format = ImageFormat.detect(image);
+        response.setContentType(format != null ? format.getContentType() : MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        response.setContentLength(image.remaining());
+        WritableByteChannel channel = Channels.newChannel(response.getOutputStream());
+        while (image.hasRemaining()) {
+            channel.write(image);
+        }
+        logger.debug("返回图片: {}", id);
+    }
+}
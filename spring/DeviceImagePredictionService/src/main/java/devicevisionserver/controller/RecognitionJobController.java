@@ -0,0 +1,30 @@
+package devicevisionserver.controller;
+
+import devicevisionserver.model.Response;
+import devicevisionserver.recognition.RecognitionJob;
+import devicevisionserver.recognition.RecognitionJobService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/jobs")
+public class RecognitionJobController {
+
+    @Autowired
+    private RecognitionJobService recognitionJobService;
+
+    // 查询异步识别任务状态与结果，任务完成后结果保留一段时间
+    @GetMapping("/{jobId}")
+    public ResponseEntity<?> getJob(@PathVariable String jobId) {
+        RecognitionJob job = recognitionJobService.getJob(jobId);
+        if (job == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new Response(404, "任务不存在或已过期"));
+        }
+        return ResponseEntity.ok(job);
+    }
+}
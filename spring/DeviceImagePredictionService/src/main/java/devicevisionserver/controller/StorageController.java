@@ -0,0 +1,50 @@
+package devicevisionserver.controller;
+
+import devicevisionserver.storage.DerivativeService;
+import devicevisionserver.storage.DerivativeStats;
+import devicevisionserver.storage.ImageStorageService;
+import devicevisionserver.storage.RetentionReport;
+import devicevisionserver.storage.RetentionService;
+import devicevisionserver.storage.StorageStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/storage")
+public class StorageController {
+
+    @Autowired
+    private ImageStorageService imageStorageService;
+
+    @Autowired
+    private DerivativeService derivativeService;
+
+    @Autowired
+    private RetentionService retentionService;
+
+    // 写入队列深度与写入耗时
+    @GetMapping("/stats")
+    public StorageStats stats() {
+        return imageStorageService.stats();
+    }
+
+    // 派生图尺寸与生成情况
+    @GetMapping("/derivatives")
+    public DerivativeStats derivatives() {
+        return derivativeService.stats();
+    }
+
+    // 保留/归档预演：只统计将要归档和删除的内容，不修改文件；已有处理在进行时返回409
+    @GetMapping("/retention/report")
+    public ResponseEntity<RetentionReport> retentionReport() {
+        RetentionReport report = retentionService.run(true);
+        if (report == null) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        return ResponseEntity.ok(report);
+    }
+}
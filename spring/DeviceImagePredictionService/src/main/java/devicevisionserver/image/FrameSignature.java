@@ -0,0 +1,135 @@
+package devicevisionserver.image;
+
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfByte;
+import org.opencv.core.Size;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.opencv.imgproc.Imgproc;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * 帧的缩略灰度签名（32x24），用于判断两帧是否近似相同。
+ * OpenCV可用时直接以1/8尺寸解码JPEG，否则用ImageIO降采样解码。
+ */
+public final class FrameSignature {
+    public static final int WIDTH = 32;
+    public static final int HEIGHT = 24;
+    private static final int DECODE_SUBSAMPLING = 8;
+
+    private final byte[] luma;
+
+    private FrameSignature(byte[] luma) {
+        this.luma = luma;
+    }
+
+    public static FrameSignature of(byte[] imageBytes) throws IOException {
+        return new FrameSignature(OpenCvLoader.isAvailable() ? decodeWithOpenCv(imageBytes) : decodeWithImageIo(imageBytes));
+    }
+
+    // 从已解码的图片计算签名，调用方已经解码过时不必再解码一次
+    public static FrameSignature of(BufferedImage image) {
+        return new FrameSignature(toLuma(image));
+    }
+
+    /**
+     * 两帧缩略图的平均绝对差（0~255），越小越相似
+     */
+    public double meanAbsDiff(FrameSignature other) {
+        long sum = 0;
+        for (int i = 0; i < luma.length; i++) {
+            sum += Math.abs((luma[i] & 0xFF) - (other.luma[i] & 0xFF));
+        }
+        return (double) sum / luma.length;
+    }
+
+    /**
+     * 64位差值哈希(dHash)：缩为9x8后比较每行相邻像素亮度，汉明距离越小越相似
+     */
+    public long dHash() {
+        int[] cells = new int[9 * 8];
+        int cellHeight = HEIGHT / 8;
+        for (int cy = 0; cy < 8; cy++) {
+            for (int cx = 0; cx < 9; cx++) {
+                int x0 = cx * WIDTH / 9;
+                int x1 = Math.max(x0 + 1, (cx + 1) * WIDTH / 9);
+                int sum = 0;
+                for (int y = cy * cellHeight; y < (cy + 1) * cellHeight; y++) {
+                    for (int x = x0; x < x1; x++) {
+                        sum += luma[y * WIDTH + x] & 0xFF;
+                    }
+                }
+                cells[cy * 9 + cx] = sum / ((x1 - x0) * cellHeight);
+            }
+        }
+        long hash = 0;
+        for (int row = 0; row < 8; row++) {
+            for (int col = 0; col < 8; col++) {
+                hash <<= 1;
+                if (cells[row * 9 + col] > cells[row * 9 + col + 1]) {
+                    hash |= 1;
+                }
+            }
+        }
+        return hash;
+    }
+
+    private static byte[] decodeWithOpenCv(byte[] imageBytes) throws IOException {
+        MatOfByte buffer = new MatOfByte(imageBytes);
+        Mat reduced = Imgcodecs.imdecode(buffer, Imgcodecs.IMREAD_REDUCED_GRAYSCALE_8);
+        Mat thumbnail = new Mat();
+        try {
+            if (reduced.empty()) {
+                throw new IOException("无效图片格式");
+            }
+            Imgproc.resize(reduced, thumbnail, new Size(WIDTH, HEIGHT), 0, 0, Imgproc.INTER_AREA);
+            byte[] luma = new byte[WIDTH * HEIGHT];
+            thumbnail.get(0, 0, luma);
+            return luma;
+        } finally {
+            buffer.release();
+            reduced.release();
+            thumbnail.release();
+        }
+    }
+
+    private static byte[] decodeWithImageIo(byte[] imageBytes) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(imageBytes))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                throw new IOException("无效图片格式");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(DECODE_SUBSAMPLING, DECODE_SUBSAMPLING, 0, 0);
+                return toLuma(reader.read(0, param));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static byte[] toLuma(BufferedImage source) {
+        BufferedImage gray = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D g = gray.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(source, 0, 0, WIDTH, HEIGHT, null);
+        } finally {
+            g.dispose();
+        }
+        return ((DataBufferByte) gray.getRaster().getDataBuffer()).getData();
+    }
+}
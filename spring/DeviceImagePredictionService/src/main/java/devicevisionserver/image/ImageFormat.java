@@ -0,0 +1,93 @@
+package devicevisionserver.image;
+
+import java.nio.ByteBuffer;
+
+// 通过文件头魔数识别图片格式，不做解码
+public enum ImageFormat {
+    JPEG("jpg", new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF}),
+    PNG("png", new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'}),
+    GIF("gif", new byte[]{'G', 'I', 'F', '8'}),
+    BMP("bmp", new byte[]{'B', 'M'});
+
+    private final String extension;
+    private final byte[] magic;
+
+    ImageFormat(String extension, byte[] magic) {
+        this.extension = extension;
+        this.magic = magic;
+    }
+
+    public String getExtension() { return extension; }
+
+    /**
+     * 根据魔数识别格式，无法识别时返回null
+     */
+    public static ImageFormat detect(byte[] data) {
+        if (data == null) return null;
+        for (ImageFormat format : values()) {
+            if (format.matches(data)) {
+                return format;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 从缓冲区当前位置识别格式，不改变缓冲区的位置，用于读取已保存的图片
+     */
+    public static ImageFormat detect(ByteBuffer data) {
+        if (data == null) return null;
+        for (ImageFormat format : values()) {
+            if (format.matches(data)) {
+                return format;
+            }
+        }
+        return null;
+    }
+
+    public String getContentType() {
+        return "image/" + (this == JPEG ? "jpeg" : extension);
+    }
+
+    /**
+     * 检查文件头和结束标记，用于发现被截断的上传；JPEG需以EOI(FFD9)结尾，PNG需以IEND块结尾
+     */
+    public boolean isComplete(byte[] data) {
+        return switch (this) {
+            case JPEG -> endsWith(data, (byte) 0xFF, (byte) 0xD9);
+            case PNG -> endsWith(data, (byte) 0xAE, (byte) 0x42, (byte) 0x60, (byte) 0x82);
+            default -> true;
+        };
+    }
+
+    private boolean matches(byte[] data) {
+        if (data.length < magic.length) return false;
+        for (int i = 0; i < magic.length; i++) {
+            if (data[i] != magic[i]) return false;
+        }
+        return true;
+    }
+
+    private boolean matches(ByteBuffer data) {
+        if (data.remaining() < magic.length) return false;
+        int start = data.position();
+        for (int i = 0; i < magic.length; i++) {
+            if (data.get(start + i) != magic[i]) return false;
+        }
+        return true;
+    }
+
+    private static boolean endsWith(byte[] data, byte... trailer) {
+        // 部分相机会在EOI后填充0字节，允许少量尾部填充
+        int end = data.length;
+        int limit = Math.max(trailer.length, data.length - 16);
+        while (end > limit && data[end - 1] == 0) {
+            end--;
+        }
+        if (end < trailer.length) return false;
+        for (int i = 0; i < trailer.length; i++) {
+            if (data[end - trailer.length + i] != trailer[i]) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,34 @@
+package devicevisionserver.image;
+
+import org.opencv.core.Core;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// 加载OpenCV本地库：先尝试系统库，失败后使用openpnp包内自带的库；都失败时调用方退回纯Java实现
+public final class OpenCvLoader {
+    private static final Logger logger = LoggerFactory.getLogger(OpenCvLoader.class);
+    private static final boolean AVAILABLE = load();
+
+    private OpenCvLoader() {
+    }
+
+    public static boolean isAvailable() {
+        return AVAILABLE;
+    }
+
+    private static boolean load() {
+        try {
+            System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+            return true;
+        } catch (Exception | UnsatisfiedLinkError e) {
+            logger.debug("系统OpenCV库不可用: {}", e.getMessage());
+        }
+        try {
+            nu.pattern.OpenCV.loadLocally();
+            return true;
+        } catch (Exception | UnsatisfiedLinkError e) {
+            logger.warn("OpenCV加载失败: {}", e.getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package devicevisionserver.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 接收链路指标：解码、保存、识别三段耗时的直方图，以及按设备统计的接收/拒绝/失败帧数。
+ * 计时器启动时注册好，设备计数器首次出现时注册并缓存，请求线程只做nanoTime相减和累加，不分配对象。
+ * 设备数超过上限后新设备统一计入 device="other"，避免标签基数无限增长。
+ */
+@Component
+public class IngestMetrics {
+
+    private static final Logger logger = LoggerFactory.getLogger(IngestMetrics.class);
+    private static final String UNKNOWN_DEVICE = "unknown";
+    private static final String OTHER_DEVICE = "other";
+
+    private record DeviceCounters(Counter received, Counter rejected, Counter failed) {
+    }
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @Value("${metrics.device.max-devices:1000}")
+    private int maxDevices;
+
+    private Timer decodeTimer;
+    private Timer storeTimer;
+    private Timer recognizeTimer;
+    private DeviceCounters otherDevices;
+    private final Map<String, DeviceCounters> devices = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        // decode: Base64解码；store: 校验并加入存储队列；recognize: 识别
+        decodeTimer = stageTimer("decode");
+        storeTimer = stageTimer("store");
+        recognizeTimer = stageTimer("recognize");
+        otherDevices = register(OTHER_DEVICE);
+    }
+
+    public void recordDecode(long nanos) {
+        decodeTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordStore(long nanos) {
+        storeTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordRecognize(long nanos) {
+        recognizeTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void received(String deviceId) {
+        counters(deviceId).received().increment();
+    }
+
+    // 请求本身有问题或服务端繁忙被拒绝（4xx、503）
+    public void rejected(String deviceId) {
+        counters(deviceId).rejected().increment();
+    }
+
+    // 请求合法但处理出错（500）
+    public void failed(String deviceId) {
+        counters(deviceId).failed().increment();
+    }
+
+    private DeviceCounters counters(String deviceId) {
+        String key = deviceId == null || deviceId.isBlank() ? UNKNOWN_DEVICE : deviceId;
+        DeviceCounters counters = devices.get(key);
+        if (counters != null) {
+            return counters;
+        }
+        if (devices.size() >= maxDevices) {
+            return otherDevices;
+        }
+        return devices.computeIfAbsent(key, this::register);
+    }
+
+    private DeviceCounters register(String deviceId) {
+        if (!OTHER_DEVICE.equals(deviceId)) {
+            logger.debug("注册设备指标: {}", deviceId);
+        }
+        return new DeviceCounters(
+                frameCounter(deviceId, "received"),
+                frameCounter(deviceId, "rejected"),
+                frameCounter(deviceId, "failed"));
+    }
+
+    private Counter frameCounter(String deviceId, String outcome) {
+        return Counter.builder("device.frames")
+                .description("设备上传的帧数")
+                .tag("device", deviceId)
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    private Timer stageTimer(String stage) {
+        return Timer.builder("device.ingest")
+                .description("接收链路各阶段耗时")
+                .tag("stage", stage)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(100_000))
+                .maximumExpectedValue(Duration.ofSeconds(30))
+                .register(registry);
+    }
+}
@@ -0,0 +1,12 @@
+package devicevisionserver.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+// 下发给摄像头的指令，字段含义见 Camera.handleBackendResponse
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record Command(String type, Integer interval) {
+
+    public static Command adjustCaptureInterval(int intervalMillis) {
+        return new Command("adjust_capture_interval", intervalMillis);
+    }
+}
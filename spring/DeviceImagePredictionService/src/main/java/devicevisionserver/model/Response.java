@@ -1,4 +1,12 @@
 package devicevisionserver.model;
 
-public record Response(int statusCode, String message) {
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+// command为后端下发给设备的指令，没有指令时不输出
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record Response(int statusCode, String message, Command command) {
+
+    public Response(int statusCode, String message) {
+        this(statusCode, message, null);
+    }
 }
@@ -0,0 +1,8 @@
+package devicevisionserver.recognition;
+
+public enum JobState {
+    QUEUED,
+    RUNNING,
+    SUCCEEDED,
+    FAILED
+}
@@ -0,0 +1,184 @@
+package devicevisionserver.recognition;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 微批处理：收集在maxWait内到达的请求（最多maxBatchSize个）合并为一次批量调用。
+ * 所有执行线程都忙时收集线程会等待空闲线程，期间到达的请求自然累积成更大的批次。
+ */
+public class MicroBatcher<I, O> implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(MicroBatcher.class);
+
+    @FunctionalInterface
+    public interface BatchFunction<I, O> {
+        List<O> apply(List<I> batch) throws Exception;
+    }
+
+    private record Pending<I, O>(I input, CompletableFuture<O> future) {
+    }
+
+    private final BatchFunction<I, O> function;
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+    private final BlockingQueue<Pending<I, O>> queue;
+    private final Semaphore idleWorkers;
+    private final ExecutorService workers;
+    private final Thread collector;
+    private volatile boolean running = true;
+
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder items = new LongAdder();
+
+    public MicroBatcher(BatchFunction<I, O> function, int maxBatchSize, long maxWaitMillis,
+                        int concurrency, int queueCapacity, String name) {
+        this.function = function;
+        this.maxBatchSize = maxBatchSize;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.idleWorkers = new Semaphore(concurrency);
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(concurrency, runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + threadIndex.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.collector = new Thread(this::collectLoop, name + "-collector");
+        this.collector.setDaemon(true);
+        this.collector.start();
+    }
+
+    /**
+     * 提交单个输入，队列已满时返回以RejectedExecutionException失败的future
+     */
+    public CompletableFuture<O> submit(I input) {
+        CompletableFuture<O> future = new CompletableFuture<>();
+        if (!running || !queue.offer(new Pending<>(input, future))) {
+            future.completeExceptionally(new RejectedExecutionException("识别队列已满"));
+        }
+        return future;
+    }
+
+    public int queueDepth() {
+        return queue.size();
+    }
+
+    public long batchCount() {
+        return batches.sum();
+    }
+
+    public double averageBatchSize() {
+        long count = batches.sum();
+        return count == 0 ? 0 : (double) items.sum() / count;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        collector.interrupt();
+        workers.shutdown();
+        try {
+            workers.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<Pending<I, O>> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        for (Pending<I, O> pending : remaining) {
+            pending.future().completeExceptionally(new RejectedExecutionException("识别服务已停止"));
+        }
+    }
+
+    private void collectLoop() {
+        while (running) {
+            try {
+                idleWorkers.acquire();
+                List<Pending<I, O>> batch = collectBatch();
+                if (batch.isEmpty()) {
+                    idleWorkers.release();
+                    continue;
+                }
+                try {
+                    workers.execute(() -> {
+                        try {
+                            runBatch(batch);
+                        } finally {
+                            idleWorkers.release();
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    for (Pending<I, O> pending : batch) {
+                        pending.future().completeExceptionally(e);
+                    }
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private List<Pending<I, O>> collectBatch() throws InterruptedException {
+        List<Pending<I, O>> batch = new ArrayList<>(maxBatchSize);
+        Pending<I, O> first = queue.poll(100, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return batch;
+        }
+        batch.add(first);
+        long deadline = System.nanoTime() + maxWaitNanos;
+        while (batch.size() < maxBatchSize) {
+            if (queue.drainTo(batch, maxBatchSize - batch.size()) > 0) {
+                continue;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                break;
+            }
+            Pending<I, O> next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+        }
+        return batch;
+    }
+
+    private void runBatch(List<Pending<I, O>> batch) {
+        batches.increment();
+        items.add(batch.size());
+        List<I> inputs = new ArrayList<>(batch.size());
+        for (Pending<I, O> pending : batch) {
+            inputs.add(pending.input());
+        }
+        try {
+            List<O> outputs = function.apply(inputs);
+            if (outputs.size() != batch.size()) {
+                throw new IllegalStateException("批量结果数量不匹配: " + outputs.size() + "/" + batch.size());
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).future().complete(outputs.get(i));
+            }
+        } catch (Exception e) {
+            logger.error("批量识别失败，批大小: {}", batch.size(), e);
+            for (Pending<I, O> pending : batch) {
+                pending.future().completeExceptionally(e);
+            }
+        }
+    }
+}
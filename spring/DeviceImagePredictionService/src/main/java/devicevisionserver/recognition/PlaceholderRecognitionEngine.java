@@ -0,0 +1,34 @@
+package devicevisionserver.recognition;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// 未配置模型时使用，保持原有的固定返回
+public class PlaceholderRecognitionEngine implements RecognitionEngine {
+    private static final String RESULT = "当前未启用识别模型，图片已成功接收并保存";
+    private static final float[] EMPTY = new float[0];
+
+    @Override
+    public float[] preprocess(byte[] imageBytes) {
+        return EMPTY;
+    }
+
+    @Override
+    public List<String> infer(List<float[]> inputs) {
+        List<String> results = new ArrayList<>(inputs.size());
+        for (int i = 0; i < inputs.size(); i++) {
+            results.add(RESULT);
+        }
+        return results;
+    }
+
+    @Override
+    public boolean cacheable() {
+        return false;
+    }
+
+    @Override
+    public int concurrency() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+}
@@ -0,0 +1,13 @@
+package devicevisionserver.recognition;
+
+public record RecognitionCacheStats(boolean enabled,
+                                    int maxDistance,
+                                    int devices,
+                                    long entries,
+                                    long hits,
+                                    long misses,
+                                    long expired,
+                                    double hitRatio,
+                                    long verifiedMatches,
+                                    long verifiedMismatches) {
+}
@@ -0,0 +1,48 @@
+package devicevisionserver.recognition;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+@Configuration
+public class RecognitionConfig {
+
+    @Value("${recognition.engine:placeholder}")
+    private String engine;
+
+    @Value("${recognition.model.path:}")
+    private String modelPath;
+
+    @Value("${recognition.model.labels:}")
+    private String labelsPath;
+
+    @Value("${recognition.model.input-op:input}")
+    private String inputOp;
+
+    @Value("${recognition.model.output-op:output}")
+    private String outputOp;
+
+    @Value("${recognition.model.input-size:224}")
+    private int inputSize;
+
+    @Value("${recognition.model.sessions:2}")
+    private int sessions;
+
+    @Value("${recognition.model.intra-op-threads:0}")
+    private int intraOpThreads;
+
+    // recognition.engine=tensorflow 时加载模型，否则使用占位引擎
+    @Bean(destroyMethod = "close")
+    public RecognitionEngine recognitionEngine() throws IOException {
+        if (!"tensorflow".equals(engine)) {
+            return new PlaceholderRecognitionEngine();
+        }
+        int threads = intraOpThreads > 0 ? intraOpThreads
+                : Math.max(1, Runtime.getRuntime().availableProcessors() / sessions);
+        return new TensorFlowRecognitionEngine(Paths.get(modelPath), Paths.get(labelsPath),
+                inputOp, outputOp, inputSize, sessions, threads);
+    }
+}
@@ -0,0 +1,43 @@
+package devicevisionserver.recognition;
+
+import devicevisionserver.image.FrameSignature;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 识别引擎：预处理在调用线程上完成，推理按批次执行，便于把多个设备的帧合并为一次调用
+ */
+public interface RecognitionEngine extends AutoCloseable {
+
+    // 解码并缩放为模型输入
+    float[] preprocess(byte[] imageBytes) throws IOException;
+
+    // 模型输入和帧的dHash，用于按dHash查结果缓存
+    record Prepared(float[] input, long dHash) {
+    }
+
+    /**
+     * 预处理并计算帧的dHash；默认实现分别解码，引擎自己解码图片时应覆盖为只解码一次
+     */
+    default Prepared prepare(byte[] imageBytes) throws IOException {
+        return new Prepared(preprocess(imageBytes), FrameSignature.of(imageBytes).dHash());
+    }
+
+    // 推理有实际开销、值得按dHash缓存结果；不做推理的引擎返回false，跳过缓存也就不用计算dHash
+    default boolean cacheable() {
+        return true;
+    }
+
+    // 批量推理，返回结果与输入一一对应
+    List<String> infer(List<float[]> inputs) throws Exception;
+
+    // 可同时执行的推理批次数
+    default int concurrency() {
+        return 1;
+    }
+
+    @Override
+    default void close() {
+    }
+}
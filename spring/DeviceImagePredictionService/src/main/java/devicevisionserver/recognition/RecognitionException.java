@@ -0,0 +1,11 @@
+package devicevisionserver.recognition;
+
+public class RecognitionException extends RuntimeException {
+    public RecognitionException(String message) {
+        super(message);
+    }
+
+    public RecognitionException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
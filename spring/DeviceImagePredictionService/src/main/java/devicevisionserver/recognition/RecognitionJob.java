@@ -0,0 +1,49 @@
+package devicevisionserver.recognition;
+
+// 异步识别任务，结果通过 /api/jobs/{jobId} 查询
+public class RecognitionJob {
+    private final String jobId;
+    private final String deviceId;
+    private final String imagePath;
+    private final long submittedAt;
+    private volatile JobState state = JobState.QUEUED;
+    private volatile String result;
+    private volatile String error;
+    private volatile long finishedAt;
+
+    public RecognitionJob(String jobId, String deviceId, String imagePath) {
+        this.jobId = jobId;
+        this.deviceId = deviceId;
+        this.imagePath = imagePath;
+        this.submittedAt = System.currentTimeMillis();
+    }
+
+    public String getJobId() { return jobId; }
+    public String getDeviceId() { return deviceId; }
+    public String getImagePath() { return imagePath; }
+    public long getSubmittedAt() { return submittedAt; }
+    public JobState getState() { return state; }
+    public String getResult() { return result; }
+    public String getError() { return error; }
+    public long getFinishedAt() { return finishedAt; }
+
+    public boolean isFinished() {
+        return state == JobState.SUCCEEDED || state == JobState.FAILED;
+    }
+
+    void markRunning() {
+        state = JobState.RUNNING;
+    }
+
+    void succeed(String result) {
+        this.result = result;
+        this.finishedAt = System.currentTimeMillis();
+        this.state = JobState.SUCCEEDED;
+    }
+
+    void fail(String error) {
+        this.error = error;
+        this.finishedAt = System.currentTimeMillis();
+        this.state = JobState.FAILED;
+    }
+}
@@ -0,0 +1,164 @@
+package devicevisionserver.recognition;
+
+import devicevisionserver.ImageRecognitionService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 异步识别：任务进入有界队列由固定数量的工作线程执行，队列满时直接拒绝而不是阻塞请求线程。
+ * 调用方先 {@link #reserve()} 占用一个名额再保存图片，拿不到名额时请求没有任何副作用。
+ */
+@Service
+public class RecognitionJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RecognitionJobService.class);
+
+    @Autowired
+    private ImageRecognitionService imageRecognitionService;
+
+    @Value("${recognition.jobs.workers:2}")
+    private int workers;
+
+    @Value("${recognition.jobs.queue-capacity:64}")
+    private int queueCapacity;
+
+    @Value("${recognition.jobs.result-ttl-ms:600000}")
+    private long resultTtlMillis;
+
+    private ThreadPoolExecutor executor;
+    // 执行中和排队中的任务总数上限，等于工作线程数加队列容量
+    private Semaphore slots;
+    private final Map<String, RecognitionJob> jobs = new ConcurrentHashMap<>();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder runNanos = new LongAdder();
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "recognition-worker-" + threadIndex.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+        slots = new Semaphore(workers + queueCapacity);
+        // 名额在任务结束时归还，此时工作线程还没从队列取走下一个任务；队列按名额总数分配，持有名额的提交总能放进队列
+        executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(workers + queueCapacity), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+        logger.info("异步识别启动，工作线程: {}，队列容量: {}", workers, queueCapacity);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 识别名额：提交任务后由任务结束时归还；未提交就关闭时立即归还
+     */
+    public final class Reservation implements AutoCloseable {
+        private boolean held = true;
+
+        private Reservation() {
+        }
+
+        @Override
+        public void close() {
+            if (held) {
+                held = false;
+                slots.release();
+            }
+        }
+    }
+
+    /**
+     * 占用一个识别名额；队列已满时返回null，调用方按 {@link #suggestedRetryMillis()} 提示重试
+     */
+    public Reservation reserve() {
+        return slots.tryAcquire() ? new Reservation() : null;
+    }
+
+    /**
+     * 用已占用的名额提交识别任务，名额转交给任务，任务结束时归还；线程池拒绝时抛出RejectedExecutionException，名额仍由reservation持有
+     */
+    public RecognitionJob submit(Reservation reservation, String deviceId, byte[] imageBytes, String imagePath) {
+        if (!reservation.held) {
+            throw new IllegalStateException("识别名额已被使用");
+        }
+        RecognitionJob job = new RecognitionJob(UUID.randomUUID().toString(), deviceId, imagePath);
+        jobs.put(job.getJobId(), job);
+        try {
+            executor.execute(() -> {
+                try {
+                    run(job, imageBytes);
+                } finally {
+                    slots.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 名额由reservation.close()归还
+            jobs.remove(job.getJobId());
+            throw e;
+        }
+        reservation.held = false;
+        return job;
+    }
+
+    public RecognitionJob getJob(String jobId) {
+        return jobs.get(jobId);
+    }
+
+    /**
+     * 按当前排队数和平均识别耗时估算队列排空所需时间
+     */
+    public long suggestedRetryMillis() {
+        long count = completed.sum();
+        long avgMillis = count == 0 ? 100 : Math.max(1, runNanos.sum() / count / 1_000_000);
+        long drainMillis = (executor.getQueue().size() + workers) * avgMillis / workers;
+        return Math.max(1000, drainMillis);
+    }
+
+    public int queueDepth() {
+        return executor.getQueue().size();
+    }
+
+    @Scheduled(fixedDelayString = "${recognition.jobs.purge-interval-ms:60000}")
+    public void purgeFinishedJobs() {
+        long expireBefore = System.currentTimeMillis() - resultTtlMillis;
+        jobs.values().removeIf(job -> job.isFinished() && job.getFinishedAt() < expireBefore);
+    }
+
+    private void run(RecognitionJob job, byte[] imageBytes) {
+        job.markRunning();
+        long start = System.nanoTime();
+        try {
+            job.succeed(imageRecognitionService.recognize(job.getDeviceId(), imageBytes));
+        } catch (Exception e) {
+            logger.error("识别任务失败: {}", job.getJobId(), e);
+            job.fail(e.getMessage());
+        } finally {
+            runNanos.add(System.nanoTime() - start);
+            completed.increment();
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package devicevisionserver.recognition;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 识别结果缓存：按设备保存最近帧的dHash和识别结果，新帧与某个缓存帧的汉明距离不超过 max-distance 时
+ * 直接返回缓存结果。每个设备最多 max-entries-per-device 条，按最近使用淘汰，超过 ttl-ms 的结果失效；
+ * 设备数也有上限，最久未出现的设备整体淘汰。
+ */
+@Component
+public class RecognitionResultCache {
+
+    private record Entry(String label, long createdAt) {
+    }
+
+    // 单个设备的缓存，按访问顺序排列，所有访问在该对象上同步
+    private static final class DeviceEntries extends LinkedHashMap<Long, Entry> {
+        private final int maxEntries;
+
+        private DeviceEntries(int maxEntries) {
+            super(16, 0.75f, true);
+            this.maxEntries = maxEntries;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+            return size() > maxEntries;
+        }
+    }
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${recognition.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${recognition.cache.max-distance:4}")
+    private int maxDistance;
+
+    @Value("${recognition.cache.max-entries-per-device:64}")
+    private int maxEntriesPerDevice;
+
+    @Value("${recognition.cache.max-devices:1000}")
+    private int maxDevices;
+
+    @Value("${recognition.cache.ttl-ms:30000}")
+    private long ttlMillis;
+
+    private Map<String, DeviceEntries> devices;
+    private DistributionSummary hitDistance;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder verifiedMatches = new LongAdder();
+    private final LongAdder verifiedMismatches = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        devices = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, DeviceEntries> eldest) {
+                return size() > maxDevices;
+            }
+        };
+        FunctionCounter.builder("recognition.cache.requests", hits, LongAdder::sum)
+                .description("识别结果缓存查询次数").tag("result", "hit").register(meterRegistry);
+        FunctionCounter.builder("recognition.cache.requests", misses, LongAdder::sum)
+                .description("识别结果缓存查询次数").tag("result", "miss").register(meterRegistry);
+        FunctionCounter.builder("recognition.cache.verifications", verifiedMatches, LongAdder::sum)
+                .description("命中后抽样复核的次数").tag("outcome", "match").register(meterRegistry);
+        FunctionCounter.builder("recognition.cache.verifications", verifiedMismatches, LongAdder::sum)
+                .description("命中后抽样复核的次数").tag("outcome", "mismatch").register(meterRegistry);
+        Gauge.builder("recognition.cache.hit.ratio", this, RecognitionResultCache::hitRatio)
+                .description("识别结果缓存命中率").register(meterRegistry);
+        // 命中时的汉明距离分布，配合抽样复核结果调整max-distance
+        hitDistance = DistributionSummary.builder("recognition.cache.hit.distance")
+                .description("命中缓存时与缓存帧的汉明距离")
+                .serviceLevelObjectives(0, 1, 2, 4, 6, 8, 12, 16)
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 查找与hash足够相似的缓存结果，优先精确匹配；未命中返回null
+     */
+    public String lookup(String deviceId, long hash) {
+        DeviceEntries entries = entries(deviceId, false);
+        if (entries == null) {
+            misses.increment();
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            Entry exact = entries.get(hash);
+            if (exact != null && now - exact.createdAt() < ttlMillis) {
+                return hit(exact, 0);
+            }
+
+            Entry best = null;
+            Long bestKey = null;
+            int bestDistance = Integer.MAX_VALUE;
+            for (Iterator<Map.Entry<Long, Entry>> it = entries.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<Long, Entry> candidate = it.next();
+                if (now - candidate.getValue().createdAt() >= ttlMillis) {
+                    it.remove();
+                    expired.increment();
+                    continue;
+                }
+                int distance = Long.bitCount(candidate.getKey() ^ hash);
+                if (distance <= maxDistance && distance < bestDistance) {
+                    best = candidate.getValue();
+                    bestKey = candidate.getKey();
+                    bestDistance = distance;
+                }
+            }
+            if (best == null) {
+                misses.increment();
+                return null;
+            }
+            // 访问一次以更新LRU顺序
+            entries.get(bestKey);
+            return hit(best, bestDistance);
+        }
+    }
+
+    public void put(String deviceId, long hash, String label) {
+        DeviceEntries entries = entries(deviceId, true);
+        synchronized (entries) {
+            entries.put(hash, new Entry(label, System.currentTimeMillis()));
+        }
+    }
+
+    // 命中后抽样重新推理，记录缓存结果与实际结果是否一致，用于评估max-distance是否过宽
+    public void recordVerification(boolean match) {
+        (match ? verifiedMatches : verifiedMismatches).increment();
+    }
+
+    public RecognitionCacheStats stats() {
+        int deviceCount;
+        long entryCount = 0;
+        synchronized (devices) {
+            deviceCount = devices.size();
+            for (DeviceEntries entries : devices.values()) {
+                synchronized (entries) {
+                    entryCount += entries.size();
+                }
+            }
+        }
+        return new RecognitionCacheStats(enabled, maxDistance, deviceCount, entryCount,
+                hits.sum(), misses.sum(), expired.sum(), hitRatio(),
+                verifiedMatches.sum(), verifiedMismatches.sum());
+    }
+
+    private String hit(Entry entry, int distance) {
+        hits.increment();
+        hitDistance.record(distance);
+        return entry.label();
+    }
+
+    private DeviceEntries entries(String deviceId, boolean create) {
+        synchronized (devices) {
+            DeviceEntries entries = devices.get(deviceId);
+            if (entries == null && create) {
+                entries = new DeviceEntries(maxEntriesPerDevice);
+                devices.put(deviceId, entries);
+            }
+            return entries;
+        }
+    }
+
+    private double hitRatio() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+}
@@ -0,0 +1,158 @@
+package devicevisionserver.recognition;
+
+import devicevisionserver.image.FrameSignature;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tensorflow.Graph;
+import org.tensorflow.Session;
+import org.tensorflow.Tensor;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * 基于TensorFlow冻结图(.pb)的识别引擎：模型只加载一次，多个Session共享同一个Graph组成会话池。
+ * 输入为 [batch, size, size, 3] 的RGB浮点张量(0~1)，输出为 [batch, 类别数] 的得分。
+ */
+public class TensorFlowRecognitionEngine implements RecognitionEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(TensorFlowRecognitionEngine.class);
+
+    private final Graph graph;
+    private final BlockingQueue<Session> sessions;
+    private final List<Session> allSessions = new ArrayList<>();
+    private final List<String> labels;
+    private final String inputOp;
+    private final String outputOp;
+    private final int inputSize;
+
+    public TensorFlowRecognitionEngine(Path modelPath, Path labelsPath, String inputOp, String outputOp,
+                                       int inputSize, int sessionCount, int intraOpThreads) throws IOException {
+        this.inputOp = inputOp;
+        this.outputOp = outputOp;
+        this.inputSize = inputSize;
+        this.labels = Files.readAllLines(labelsPath, StandardCharsets.UTF_8);
+        this.graph = new Graph();
+        this.graph.importGraphDef(Files.readAllBytes(modelPath));
+
+        byte[] config = sessionConfig(intraOpThreads);
+        this.sessions = new ArrayBlockingQueue<>(sessionCount);
+        for (int i = 0; i < sessionCount; i++) {
+            Session session = new Session(graph, config);
+            allSessions.add(session);
+            sessions.add(session);
+        }
+        logger.info("模型加载完成: {}，类别数: {}，会话数: {}", modelPath, labels.size(), sessionCount);
+    }
+
+    @Override
+    public float[] preprocess(byte[] imageBytes) throws IOException {
+        return toInput(decode(imageBytes));
+    }
+
+    // 模型输入和dHash都从同一次解码的图片计算
+    @Override
+    public Prepared prepare(byte[] imageBytes) throws IOException {
+        BufferedImage source = decode(imageBytes);
+        return new Prepared(toInput(source), FrameSignature.of(source).dHash());
+    }
+
+    private static BufferedImage decode(byte[] imageBytes) throws IOException {
+        BufferedImage source = ImageIO.read(new ByteArrayInputStream(imageBytes));
+        if (source == null) {
+            throw new IOException("无效图片格式");
+        }
+        return source;
+    }
+
+    private float[] toInput(BufferedImage source) {
+        BufferedImage resized = new BufferedImage(inputSize, inputSize, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = resized.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(source, 0, 0, inputSize, inputSize, null);
+        } finally {
+            g.dispose();
+        }
+
+        int[] pixels = resized.getRGB(0, 0, inputSize, inputSize, null, 0, inputSize);
+        float[] input = new float[pixels.length * 3];
+        for (int i = 0, j = 0; i < pixels.length; i++) {
+            int rgb = pixels[i];
+            input[j++] = ((rgb >> 16) & 0xFF) / 255f;
+            input[j++] = ((rgb >> 8) & 0xFF) / 255f;
+            input[j++] = (rgb & 0xFF) / 255f;
+        }
+        return input;
+    }
+
+    @Override
+    public List<String> infer(List<float[]> inputs) throws Exception {
+        int perImage = inputSize * inputSize * 3;
+        FloatBuffer buffer = FloatBuffer.allocate(inputs.size() * perImage);
+        for (float[] input : inputs) {
+            buffer.put(input);
+        }
+        buffer.flip();
+
+        Session session = sessions.take();
+        try (Tensor<Float> inputTensor = Tensor.create(new long[]{inputs.size(), inputSize, inputSize, 3}, buffer);
+             Tensor<?> output = session.runner().feed(inputOp, inputTensor).fetch(outputOp).run().get(0)) {
+            float[][] scores = new float[inputs.size()][(int) output.shape()[1]];
+            output.copyTo(scores);
+
+            List<String> results = new ArrayList<>(inputs.size());
+            for (float[] row : scores) {
+                results.add(describe(row));
+            }
+            return results;
+        } finally {
+            sessions.add(session);
+        }
+    }
+
+    @Override
+    public int concurrency() {
+        return allSessions.size();
+    }
+
+    @Override
+    public void close() {
+        for (Session session : allSessions) {
+            session.close();
+        }
+        graph.close();
+    }
+
+    private String describe(float[] scores) {
+        int best = 0;
+        for (int i = 1; i < scores.length; i++) {
+            if (scores[i] > scores[best]) {
+                best = i;
+            }
+        }
+        String label = best < labels.size() ? labels.get(best) : String.valueOf(best);
+        return String.format("%s(%.2f)", label, scores[best]);
+    }
+
+    /**
+     * 手工编码ConfigProto：字段2 intra_op_parallelism_threads，字段5 inter_op_parallelism_threads，
+     * 避免多个会话各自占满全部CPU核心
+     */
+    private static byte[] sessionConfig(int intraOpThreads) {
+        int threads = Math.max(1, Math.min(intraOpThreads, 127));
+        return new byte[]{0x10, (byte) threads, 0x28, 1};
+    }
+}
@@ -0,0 +1,217 @@
+package devicevisionserver.storage;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import net.coobird.thumbnailator.Thumbnails;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 缩略图等派生图：原图落盘后在后台线程中生成，每种尺寸只生成一次，保存为 {path}/derivatives/{名称}/{图片ID}.jpg。
+ * 原图只解码一次，各尺寸从大到小依次由上一级缩放得到；派生图是尽力而为的，队列满时直接丢弃，读取时回退到原图。
+ */
+@Service
+public class DerivativeService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DerivativeService.class);
+
+    public record Variant(String name, int size) {
+    }
+
+    @Value("${image.storage.path:./uploaded-images}")
+    private String imageStoragePath;
+
+    @Value("${image.derivatives.enabled:true}")
+    private boolean enabled;
+
+    // 名称:最长边像素，逗号分隔
+    @Value("${image.derivatives.sizes:thumb:160,model:224,preview:640}")
+    private String sizes;
+
+    @Value("${image.derivatives.quality:0.8}")
+    private float quality;
+
+    @Value("${image.derivatives.threads:1}")
+    private int threads;
+
+    @Value("${image.derivatives.queue-capacity:128}")
+    private int queueCapacity;
+
+    // 内存中记住最近处理完成的图片ID数
+    @Value("${image.derivatives.completed-ids:10000}")
+    private int completedIds;
+
+    private Path root;
+    private List<Variant> variants;
+    private ThreadPoolExecutor executor;
+    // 已处理完成的图片ID（按最近使用淘汰）；原图不大于最小尺寸时不会生成任何文件，不能靠文件判断
+    private Set<String> completed;
+    private final LongAdder generated = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder generateNanos = new LongAdder();
+
+    @PostConstruct
+    public void start() {
+        root = Paths.get(imageStoragePath, "derivatives").toAbsolutePath().normalize();
+        variants = parseSizes(sizes);
+        int maxCompleted = Math.max(1, completedIds);
+        completed = Collections.synchronizedSet(Collections.newSetFromMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > maxCompleted;
+            }
+        }));
+        if (!enabled) {
+            logger.info("派生图生成已关闭");
+            return;
+        }
+        AtomicInteger threadIndex = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "image-derivative-" + threadIndex.getAndIncrement());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        };
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+        logger.info("派生图生成启动，尺寸: {}，线程: {}", variants, threads);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (executor == null) return;
+        executor.shutdown();
+        if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 原图写入成功后调用，在后台生成各尺寸派生图；不阻塞调用线程
+     */
+    public void submit(String imageId, byte[] imageBytes) {
+        if (executor == null || variants.isEmpty()) return;
+        // 内容寻址下的重复帧：最近处理过的直接跳过；最小尺寸最后生成，重启后仍可据此跳过
+        if (completed.contains(imageId) || Files.isRegularFile(resolve(variants.get(0), imageId))) return;
+        try {
+            executor.execute(() -> generate(imageId, imageBytes));
+        } catch (RejectedExecutionException e) {
+            dropped.increment();
+        }
+    }
+
+    /**
+     * 返回最长边不小于 size 的最小派生图；没有合适尺寸或尚未生成时返回null，由调用方回退到原图
+     */
+    public Path find(String imageId, int size) {
+        for (Variant variant : variants) {
+            if (variant.size() < size) continue;
+            Path path = resolve(variant, imageId);
+            if (Files.isRegularFile(path)) {
+                return path;
+            }
+        }
+        return null;
+    }
+
+    public DerivativeStats stats() {
+        long count = generated.sum();
+        return new DerivativeStats(
+                variants.stream().map(v -> v.name() + ":" + v.size()).toList(),
+                executor == null ? 0 : executor.getQueue().size(),
+                count,
+                failed.sum(),
+                dropped.sum(),
+                count == 0 ? 0 : generateNanos.sum() / 1e6 / count);
+    }
+
+    private void generate(String imageId, byte[] imageBytes) {
+        long start = System.nanoTime();
+        try {
+            BufferedImage current = ImageIO.read(new ByteArrayInputStream(imageBytes));
+            if (current == null) {
+                throw new IOException("无法解码图片");
+            }
+            int longest = Math.max(current.getWidth(), current.getHeight());
+            // 从大到小生成，每一级由上一级缩放，避免每个尺寸都从原图缩放
+            for (int i = variants.size() - 1; i >= 0; i--) {
+                Variant variant = variants.get(i);
+                if (variant.size() >= longest) continue; // 原图已经足够小，直接使用原图
+                current = Thumbnails.of(current)
+                        .size(variant.size(), variant.size())
+                        .imageType(BufferedImage.TYPE_INT_RGB)
+                        .asBufferedImage();
+                longest = variant.size();
+                write(resolve(variant, imageId), current);
+            }
+            completed.add(imageId);
+            generated.increment();
+            generateNanos.add(System.nanoTime() - start);
+        } catch (IOException | RuntimeException e) {
+            failed.increment();
+            logger.warn("生成派生图失败: {}，{}", imageId, e.getMessage());
+        }
+    }
+
+    // 先写临时文件再改名，读取方不会看到写了一半的图片
+    private void write(Path path, BufferedImage image) throws IOException {
+        Files.createDirectories(path.getParent());
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+            Thumbnails.of(image).scale(1.0).outputFormat("jpg").outputQuality(quality).toOutputStream(out);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Path resolve(Variant variant, String imageId) {
+        int dot = imageId.lastIndexOf('.');
+        String base = dot > imageId.lastIndexOf('/') ? imageId.substring(0, dot) : imageId;
+        Path path = root.resolve(variant.name()).resolve(base + ".jpg").normalize();
+        if (!path.startsWith(root.resolve(variant.name()))) {
+            throw new IllegalArgumentException("非法图片ID: " + imageId);
+        }
+        return path;
+    }
+
+    static List<Variant> parseSizes(String spec) {
+        List<Variant> result = new ArrayList<>();
+        for (String entry : spec.split(",")) {
+            String trimmed = entry.trim();
+            if (trimmed.isEmpty()) continue;
+            int colon = trimmed.indexOf(':');
+            if (colon <= 0) {
+                throw new IllegalArgumentException("派生图尺寸格式应为 名称:像素，实际: " + trimmed);
+            }
+            result.add(new Variant(trimmed.substring(0, colon), Integer.parseInt(trimmed.substring(colon + 1).trim())));
+        }
+        result.sort(Comparator.comparingInt(Variant::size));
+        return List.copyOf(result);
+    }
+}
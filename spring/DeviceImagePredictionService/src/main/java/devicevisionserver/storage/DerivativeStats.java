@@ -0,0 +1,11 @@
+package devicevisionserver.storage;
+
+import java.util.List;
+
+public record DerivativeStats(List<String> variants,
+                              int queueDepth,
+                              long generated,
+                              long failed,
+                              long dropped,
+                              double avgGenerateMillis) {
+}
@@ -0,0 +1,121 @@
+package devicevisionserver.storage;
+
+import devicevisionserver.image.ImageFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 每帧一个文件：{path}/{deviceId}/yyyy/MM/dd/{uuid}.jpg，ID为相对路径
+ */
+public class FileImageStore implements ImageStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileImageStore.class);
+    private static final DateTimeFormatter DATE_DIR = DateTimeFormatter.ofPattern("yyyy/MM/dd");
+    private static final int MAX_CACHED_DIRS = 10_000;
+
+    private final Path root;
+    private final boolean fsync;
+    private final Set<Path> createdDirs = ConcurrentHashMap.newKeySet();
+
+    public FileImageStore(Path root, boolean fsync) {
+        this.root = root.toAbsolutePath().normalize();
+        this.fsync = fsync;
+    }
+
+    @Override
+    public String allocateId(String deviceId, ImageFormat format, byte[] data) {
+        return deviceId + "/" + LocalDate.now().format(DATE_DIR) + "/" + UUID.randomUUID() + "." + format.getExtension();
+    }
+
+    @Override
+    public void writeBatch(List<PendingImage> batch, WriteListener listener) {
+        List<FileChannel> unflushed = fsync ? new ArrayList<>(batch.size()) : null;
+        try {
+            for (PendingImage image : batch) {
+                long start = System.nanoTime();
+                try {
+                    Path path = resolve(image.id());
+                    FileChannel channel = open(path);
+                    try {
+                        ByteBuffer buffer = ByteBuffer.wrap(image.data());
+                        while (buffer.hasRemaining()) {
+                            channel.write(buffer);
+                        }
+                    } finally {
+                        if (unflushed != null) {
+                            unflushed.add(channel);
+                        } else {
+                            channel.close();
+                        }
+                    }
+                    listener.onWritten(image, System.nanoTime() - start);
+                } catch (IOException | IllegalArgumentException e) {
+                    listener.onFailed(image, e);
+                }
+            }
+        } finally {
+            // 整批写完后统一刷盘，减少fsync次数
+            if (unflushed != null) {
+                for (FileChannel channel : unflushed) {
+                    try (channel) {
+                        channel.force(false);
+                    } catch (IOException e) {
+                        logger.error("刷盘失败", e);
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public ByteBuffer read(String id) throws IOException {
+        Path path = resolve(id);
+        if (!Files.isRegularFile(path)) {
+            // 已结束的日期会被打包为按天的归档
+            return ImageArchive.read(root, id);
+        }
+        return ByteBuffer.wrap(Files.readAllBytes(path));
+    }
+
+    private Path resolve(String id) {
+        Path path = root.resolve(id).normalize();
+        if (!path.startsWith(root)) {
+            throw new IllegalArgumentException("非法图片ID: " + id);
+        }
+        return path;
+    }
+
+    private FileChannel open(Path path) throws IOException {
+        Path dir = path.getParent();
+        if (!createdDirs.contains(dir)) {
+            Files.createDirectories(dir);
+            if (createdDirs.size() >= MAX_CACHED_DIRS) {
+                createdDirs.clear();
+            }
+            createdDirs.add(dir);
+        }
+        try {
+            return FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        } catch (NoSuchFileException e) {
+            // 目录可能已被清理，去掉缓存后重建
+            createdDirs.remove(dir);
+            Files.createDirectories(dir);
+            return FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package devicevisionserver.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * 按天归档的图片：{path}/archive/{deviceId}/yyyy-MM-dd.zip，条目名为原文件名。
+ * zip的中央目录就是按文件名的索引，读取单张图片时不需要扫描整个归档。
+ */
+final class ImageArchive {
+
+    static final String ARCHIVE_DIR = "archive";
+    static final String SUFFIX = ".zip";
+
+    private ImageArchive() {
+    }
+
+    static Path path(Path root, String deviceId, LocalDate day) {
+        return root.resolve(ARCHIVE_DIR).resolve(deviceId).resolve(day + SUFFIX);
+    }
+
+    /**
+     * 按图片ID（deviceId/yyyy/MM/dd/文件名）从归档中读取，ID格式不符或归档中没有时返回null
+     */
+    static ByteBuffer read(Path root, String id) throws IOException {
+        String[] parts = id.split("/");
+        if (parts.length < 5) {
+            return null;
+        }
+        int n = parts.length;
+        LocalDate day;
+        try {
+            day = LocalDate.of(Integer.parseInt(parts[n - 4]), Integer.parseInt(parts[n - 3]), Integer.parseInt(parts[n - 2]));
+        } catch (NumberFormatException | DateTimeException e) {
+            return null;
+        }
+        String deviceId = String.join("/", Arrays.copyOfRange(parts, 0, n - 4));
+        Path archive = path(root, deviceId, day).normalize();
+        if (!archive.startsWith(root.resolve(ARCHIVE_DIR)) || !Files.isRegularFile(archive)) {
+            return null;
+        }
+        try (ZipFile zip = new ZipFile(archive.toFile())) {
+            ZipEntry entry = zip.getEntry(parts[n - 1]);
+            if (entry == null) {
+                return null;
+            }
+            try (InputStream in = zip.getInputStream(entry)) {
+                return ByteBuffer.wrap(in.readAllBytes());
+            }
+        }
+    }
+}
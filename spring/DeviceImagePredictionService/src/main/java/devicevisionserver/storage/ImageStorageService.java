@@ -0,0 +1,190 @@
+package devicevisionserver.storage;
+
+import devicevisionserver.image.ImageFormat;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * 图片存储：请求线程只做魔数校验并入队，原始字节由后台写入线程批量交给存储后端落盘，不再解码重编码
+ */
+@Service
+public class ImageStorageService implements ImageStore.WriteListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageStorageService.class);
+    // 设备ID直接作为存储目录名：只允许字母、数字、下划线、短横线和点，不能以点开头
+    private static final Pattern DEVICE_ID = Pattern.compile("[A-Za-z0-9_-][A-Za-z0-9._-]{0,63}");
+    // 与存储根目录下的保留目录同名的设备ID
+    private static final Set<String> RESERVED_DEVICE_IDS = Set.of("archive", "derivatives", "segments");
+
+    @Autowired
+    private ImageStore imageStore;
+
+    @Autowired
+    private DerivativeService derivativeService;
+
+    @Value("${image.storage.writer-threads:2}")
+    private int writerThreads;
+
+    @Value("${image.storage.queue-capacity:256}")
+    private int queueCapacity;
+
+    @Value("${image.storage.batch-size:32}")
+    private int batchSize;
+
+    private BlockingQueue<PendingImage> queue;
+    private final List<Thread> writers = new ArrayList<>();
+    private volatile boolean running;
+
+    private final LongAdder written = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder deduplicated = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder writeNanos = new LongAdder();
+    private final LongAdder lagNanos = new LongAdder();
+    private final AtomicLong maxWriteNanos = new AtomicLong();
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        running = true;
+        for (int i = 0; i < writerThreads; i++) {
+            Thread writer = new Thread(this::writeLoop, "image-writer-" + i);
+            writer.setDaemon(true);
+            writer.start();
+            writers.add(writer);
+        }
+        logger.info("图片存储启动，后端: {}，写入线程: {}，队列容量: {}", imageStore.getClass().getSimpleName(), writerThreads, queueCapacity);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        for (Thread writer : writers) {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        }
+        if (!queue.isEmpty()) {
+            logger.warn("存储停止时仍有 {} 张图片未写入", queue.size());
+        }
+        try {
+            imageStore.close();
+        } catch (IOException e) {
+            logger.error("关闭存储失败", e);
+        }
+    }
+
+    /**
+     * 校验设备ID和图片并加入写入队列，返回图片ID；图片在后台写入，返回时可能尚未落盘
+     */
+    public String store(byte[] imageBytes, String deviceId) throws IOException {
+        if (!isValidDeviceId(deviceId)) {
+            throw new IOException("无效设备ID: " + deviceId);
+        }
+        ImageFormat format = ImageFormat.detect(imageBytes);
+        if (format == null) {
+            throw new IOException("无效图片格式");
+        }
+        if (!format.isComplete(imageBytes)) {
+            throw new IOException("图片数据不完整");
+        }
+
+        String id = imageStore.allocateId(deviceId, format, imageBytes);
+        if (imageStore.contains(id)) {
+            deduplicated.increment();
+            return id;
+        }
+        if (!queue.offer(new PendingImage(id, deviceId, format, imageBytes, System.nanoTime()))) {
+            rejected.increment();
+            throw new StorageBusyException("存储队列已满");
+        }
+        return id;
+    }
+
+    static boolean isValidDeviceId(String deviceId) {
+        return deviceId != null && DEVICE_ID.matcher(deviceId).matches()
+                && !RESERVED_DEVICE_IDS.contains(deviceId.toLowerCase(Locale.ROOT));
+    }
+
+    // 按ID读取已保存的图片，不存在时返回null
+    public ByteBuffer read(String id) throws IOException {
+        return imageStore.read(id);
+    }
+
+    public StorageStats stats() {
+        long count = written.sum();
+        return new StorageStats(
+                queue.size(),
+                queueCapacity,
+                count,
+                failed.sum(),
+                rejected.sum(),
+                deduplicated.sum(),
+                batches.sum(),
+                count == 0 ? 0 : writeNanos.sum() / 1e6 / count,
+                maxWriteNanos.get() / 1e6,
+                count == 0 ? 0 : lagNanos.sum() / 1e6 / count);
+    }
+
+    private void writeLoop() {
+        List<PendingImage> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingImage first = queue.poll(200, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                imageStore.writeBatch(batch, this);
+                batches.increment();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                logger.error("批量写入异常", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    @Override
+    public void onWritten(PendingImage image, long writeNanos) {
+        written.increment();
+        writeNanos(writeNanos, System.nanoTime() - image.enqueuedAt());
+        derivativeService.submit(image.id(), image.data());
+    }
+
+    @Override
+    public void onDuplicate(PendingImage image) {
+        deduplicated.increment();
+    }
+
+    @Override
+    public void onFailed(PendingImage image, Exception e) {
+        failed.increment();
+        logger.error("写入图片失败: {}", image.id(), e);
+    }
+
+    private void writeNanos(long writeTime, long lag) {
+        writeNanos.add(writeTime);
+        lagNanos.add(lag);
+        maxWriteNanos.accumulateAndGet(writeTime, Math::max);
+    }
+}
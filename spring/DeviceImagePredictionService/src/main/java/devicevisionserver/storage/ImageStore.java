@@ -0,0 +1,38 @@
+package devicevisionserver.storage;
+
+import devicevisionserver.image.ImageFormat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * 图片存储后端。ID在请求线程上分配（不做IO），实际写入由后台写入线程批量执行
+ */
+public interface ImageStore {
+
+    interface WriteListener {
+        void onWritten(PendingImage image, long writeNanos);
+
+        void onFailed(PendingImage image, Exception e);
+
+        // 内容已保存过（或正由其他写入线程保存），未重复写入
+        default void onDuplicate(PendingImage image) {
+        }
+    }
+
+    String allocateId(String deviceId, ImageFormat format, byte[] data);
+
+    // 相同内容是否已经保存过，内容寻址的存储可据此跳过重复写入
+    default boolean contains(String id) {
+        return false;
+    }
+
+    void writeBatch(List<PendingImage> batch, WriteListener listener);
+
+    // 读取已保存的图片，不存在时返回null
+    ByteBuffer read(String id) throws IOException;
+
+    default void close() throws IOException {
+    }
+}
@@ -0,0 +1,31 @@
+package devicevisionserver.storage;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按字节数限速：每次读写前预约对应的时间片，超出速率时调用线程休眠，多个线程共享同一速率
+ */
+final class IoThrottle {
+
+    private final long bytesPerSecond;
+    private long nextFreeNanos = System.nanoTime();
+
+    IoThrottle(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    void acquire(long bytes) throws InterruptedException {
+        if (bytesPerSecond <= 0 || bytes <= 0) return;
+        long cost = (long) (bytes * 1e9 / bytesPerSecond);
+        long waitNanos;
+        synchronized (this) {
+            long now = System.nanoTime();
+            long start = Math.max(nextFreeNanos, now);
+            nextFreeNanos = start + cost;
+            waitNanos = start - now;
+        }
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package devicevisionserver.storage;
+
+import devicevisionserver.image.ImageFormat;
+
+// 等待后台写入的图片
+public record PendingImage(String id, String deviceId, ImageFormat format, byte[] data, long enqueuedAt) {
+}
@@ -0,0 +1,17 @@
+package devicevisionserver.storage;
+
+import java.util.List;
+
+// 一次保留/归档处理的结果；dryRun为true时只统计将要执行的操作，不修改任何文件
+public record RetentionReport(boolean dryRun,
+                              int devices,
+                              long daysArchived,
+                              long filesArchived,
+                              long bytesArchived,
+                              long daysDeleted,
+                              long filesDeleted,
+                              long bytesDeleted,
+                              long failures,
+                              long elapsedMillis,
+                              List<String> actions) {
+}
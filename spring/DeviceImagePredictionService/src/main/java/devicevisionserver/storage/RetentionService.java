@@ -0,0 +1,134 @@
+package devicevisionserver.storage;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 图片保留与归档：定时把已结束的日期目录打包为每天一个zip，并按设备保留天数删除过期数据。
+ * image.storage.type=segment 时不归档，按同样的保留天数删除过期段文件，并从索引中去掉这些段的记录。
+ */
+@Service
+public class RetentionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RetentionService.class);
+
+    @Autowired
+    private ImageStore imageStore;
+
+    @Value("${image.storage.path:./uploaded-images}")
+    private String imageStoragePath;
+
+    @Value("${image.retention.enabled:true}")
+    private boolean enabled;
+
+    // 早于 今天-N天 的日期目录打包归档，0表示不归档
+    @Value("${image.retention.archive-after-days:1}")
+    private int archiveAfterDays;
+
+    // 默认保留天数，0表示永久保留
+    @Value("${image.retention.days:0}")
+    private int retentionDays;
+
+    // 设备ID:保留天数，逗号分隔
+    @Value("${image.retention.device-days:}")
+    private String deviceDaysSpec;
+
+    @Value("${image.retention.compression-level:1}")
+    private int compressionLevel;
+
+    @Value("${image.retention.parallelism:2}")
+    private int parallelism;
+
+    @Value("${image.retention.max-bytes-per-second:20971520}")
+    private long maxBytesPerSecond;
+
+    private Map<String, Integer> deviceDays;
+    private ForkJoinPool pool;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    @PostConstruct
+    public void init() {
+        deviceDays = parseDeviceDays(deviceDaysSpec);
+        pool = new ForkJoinPool(Math.max(1, parallelism));
+        logger.info("图片保留策略{}：{}天后归档，默认保留{}天，按设备 {}，限速 {} 字节/秒",
+                enabled ? "启用" : "关闭", archiveAfterDays, retentionDays == 0 ? "永久" : retentionDays,
+                deviceDays, maxBytesPerSecond);
+        if (imageStore instanceof SegmentImageStore && (!enabled || retentionDays == 0)) {
+            logger.warn("段文件存储未配置保留天数，段文件、内存索引和 index.log 将随图片数持续增长");
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        pool.shutdownNow();
+    }
+
+    @Scheduled(cron = "${image.retention.cron:0 30 3 * * *}")
+    public void scheduledRun() {
+        if (!enabled) return;
+        RetentionReport report = run(false);
+        if (report != null) {
+            logger.info("保留处理完成：归档 {} 天 {} 个文件，删除 {} 天 {} 个文件，失败 {}，耗时 {}ms",
+                    report.daysArchived(), report.filesArchived(), report.daysDeleted(), report.filesDeleted(),
+                    report.failures(), report.elapsedMillis());
+        }
+    }
+
+    /**
+     * 执行一次保留处理；已有处理在进行时返回null。dryRun时只生成报告。
+     */
+    public RetentionReport run(boolean dryRun) {
+        if (!(imageStore instanceof FileImageStore) && !(imageStore instanceof SegmentImageStore)) {
+            logger.info("当前存储类型不支持保留处理，跳过");
+            return new RetentionReport(dryRun, 0, 0, 0, 0, 0, 0, 0, 0, 0, List.of());
+        }
+        if (!running.compareAndSet(false, true)) {
+            return null;
+        }
+        try {
+            if (imageStore instanceof SegmentImageStore segmentStore) {
+                return segmentStore.expire(retentionDays, deviceDays, LocalDate.now(), dryRun);
+            }
+            Path root = Paths.get(imageStoragePath);
+            RetentionWalker walker = new RetentionWalker(root, archiveAfterDays, retentionDays, deviceDays,
+                    compressionLevel, new IoThrottle(maxBytesPerSecond), dryRun);
+            return walker.run(pool, LocalDate.now());
+        } catch (IOException e) {
+            logger.error("保留处理失败", e);
+            throw new IllegalStateException("保留处理失败: " + e.getMessage(), e);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    static Map<String, Integer> parseDeviceDays(String spec) {
+        Map<String, Integer> result = new HashMap<>();
+        if (spec == null) return result;
+        for (String entry : spec.split(",")) {
+            String trimmed = entry.trim();
+            if (trimmed.isEmpty()) continue;
+            int colon = trimmed.lastIndexOf(':');
+            if (colon <= 0) {
+                throw new IllegalArgumentException("设备保留天数格式应为 设备ID:天数，实际: " + trimmed);
+            }
+            result.put(trimmed.substring(0, colon).trim(), Math.max(0, Integer.parseInt(trimmed.substring(colon + 1).trim())));
+        }
+        return result;
+    }
+}
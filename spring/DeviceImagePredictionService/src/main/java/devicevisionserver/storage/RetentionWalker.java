@@ -0,0 +1,390 @@
+package devicevisionserver.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * 遍历 {path}/{deviceId}/yyyy/MM/dd 目录树执行一次保留策略：每个设备、每一天各是一个fork-join子任务。
+ * 超过设备保留天数的日期（目录、归档及派生图）整体删除；已结束且超过 archiveAfterDays 的日期打包为一个zip归档后删除原文件。
+ * 所有读写按字节数经过同一个IoThrottle限速；dryRun时只统计将要执行的操作。
+ */
+final class RetentionWalker {
+
+    private static final Logger logger = LoggerFactory.getLogger(RetentionWalker.class);
+    private static final Set<String> RESERVED_DIRS = Set.of(ImageArchive.ARCHIVE_DIR, "derivatives", "segments");
+    private static final String DERIVATIVES_DIR = "derivatives";
+    // 删除文件按固定字节数计入限速，避免大量删除挤占磁盘
+    private static final long DELETE_COST_BYTES = 4096;
+    private static final int MAX_ACTIONS = 1000;
+
+    private final Path root;
+    private final int archiveAfterDays;
+    private final int defaultRetentionDays;
+    private final Map<String, Integer> deviceRetentionDays;
+    private final int compressionLevel;
+    private final IoThrottle throttle;
+    private final boolean dryRun;
+
+    private final LongAdder daysArchived = new LongAdder();
+    private final LongAdder filesArchived = new LongAdder();
+    private final LongAdder bytesArchived = new LongAdder();
+    private final LongAdder daysDeleted = new LongAdder();
+    private final LongAdder filesDeleted = new LongAdder();
+    private final LongAdder bytesDeleted = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final ConcurrentLinkedQueue<String> actions = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger actionCount = new AtomicInteger();
+
+    RetentionWalker(Path root, int archiveAfterDays, int defaultRetentionDays, Map<String, Integer> deviceRetentionDays,
+                    int compressionLevel, IoThrottle throttle, boolean dryRun) {
+        this.root = root.toAbsolutePath().normalize();
+        this.archiveAfterDays = archiveAfterDays;
+        this.defaultRetentionDays = defaultRetentionDays;
+        this.deviceRetentionDays = deviceRetentionDays;
+        this.compressionLevel = compressionLevel;
+        this.throttle = throttle;
+        this.dryRun = dryRun;
+    }
+
+    RetentionReport run(ForkJoinPool pool, LocalDate today) throws IOException {
+        long start = System.currentTimeMillis();
+        Set<String> devices = listDevices();
+        List<DeviceTask> tasks = new ArrayList<>(devices.size());
+        for (String deviceId : devices) {
+            tasks.add(new DeviceTask(deviceId, today));
+        }
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        });
+        return new RetentionReport(dryRun, devices.size(),
+                daysArchived.sum(), filesArchived.sum(), bytesArchived.sum(),
+                daysDeleted.sum(), filesDeleted.sum(), bytesDeleted.sum(),
+                failures.sum(), System.currentTimeMillis() - start, List.copyOf(actions));
+    }
+
+    private final class DeviceTask extends RecursiveAction {
+        private final String deviceId;
+        private final LocalDate today;
+
+        private DeviceTask(String deviceId, LocalDate today) {
+            this.deviceId = deviceId;
+            this.today = today;
+        }
+
+        @Override
+        protected void compute() {
+            Set<LocalDate> days = new TreeSet<>();
+            try {
+                days.addAll(listDayDirs(root.resolve(deviceId)));
+                days.addAll(listArchivedDays(deviceId));
+            } catch (IOException e) {
+                failures.increment();
+                logger.error("遍历设备目录失败: {}", deviceId, e);
+                return;
+            }
+            List<DayTask> tasks = new ArrayList<>(days.size());
+            for (LocalDate day : days) {
+                tasks.add(new DayTask(deviceId, day, today));
+            }
+            invokeAll(tasks);
+        }
+    }
+
+    private final class DayTask extends RecursiveAction {
+        private final String deviceId;
+        private final LocalDate day;
+        private final LocalDate today;
+
+        private DayTask(String deviceId, LocalDate day, LocalDate today) {
+            this.deviceId = deviceId;
+            this.day = day;
+            this.today = today;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                process(deviceId, day, today);
+            } catch (IOException e) {
+                failures.increment();
+                logger.error("处理 {}/{} 失败", deviceId, day, e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void process(String deviceId, LocalDate day, LocalDate today) throws IOException, InterruptedException {
+        int retentionDays = deviceRetentionDays.getOrDefault(deviceId, defaultRetentionDays);
+        if (retentionDays > 0 && day.isBefore(today.minusDays(retentionDays))) {
+            deleteDay(deviceId, day);
+        } else if (archiveAfterDays > 0 && day.isBefore(today) && !day.isAfter(today.minusDays(archiveAfterDays))
+                && Files.isDirectory(dayDir(deviceId, day))) {
+            archiveDay(deviceId, day);
+        }
+    }
+
+    private void deleteDay(String deviceId, LocalDate day) throws IOException, InterruptedException {
+        Path dir = dayDir(deviceId, day);
+        Path archive = ImageArchive.path(root, deviceId, day);
+        List<Path> files = listFiles(dir);
+        long fileCount = files.size();
+        long bytes = sizeOf(files);
+        if (Files.isRegularFile(archive)) {
+            try (ZipFile zip = new ZipFile(archive.toFile())) {
+                fileCount += zip.size();
+            }
+            bytes += Files.size(archive);
+        }
+        if (fileCount == 0 && !Files.isDirectory(dir)) {
+            return;
+        }
+        record("删除 " + deviceId + "/" + day + "：" + fileCount + " 个文件，" + bytes + " 字节");
+        daysDeleted.increment();
+        filesDeleted.add(fileCount);
+        bytesDeleted.add(bytes);
+        if (dryRun) return;
+
+        for (Path file : files) {
+            throttle.acquire(DELETE_COST_BYTES);
+            Files.deleteIfExists(file);
+        }
+        deleteDirAndEmptyParents(dir, root.resolve(deviceId));
+        throttle.acquire(DELETE_COST_BYTES);
+        Files.deleteIfExists(archive);
+        deleteDerivatives(deviceId, day);
+    }
+
+    /**
+     * 打包为zip：先写临时文件并刷盘，再原子改名，最后删除原文件。归档已存在时（上次中途失败）先复制已有条目再追加。
+     */
+    private void archiveDay(String deviceId, LocalDate day) throws IOException, InterruptedException {
+        Path dir = dayDir(deviceId, day);
+        List<Path> files = listFiles(dir);
+        if (files.isEmpty()) {
+            if (!dryRun) deleteDirAndEmptyParents(dir, root.resolve(deviceId));
+            return;
+        }
+        long bytes = sizeOf(files);
+        Path archive = ImageArchive.path(root, deviceId, day);
+        record("归档 " + deviceId + "/" + day + "：" + files.size() + " 个文件，" + bytes + " 字节 -> " + root.relativize(archive));
+        daysArchived.increment();
+        filesArchived.add(files.size());
+        bytesArchived.add(bytes);
+        if (dryRun) return;
+
+        Files.createDirectories(archive.getParent());
+        Path tmp = archive.resolveSibling(archive.getFileName() + ".tmp");
+        Set<String> names = new HashSet<>();
+        try (ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 64 * 1024))) {
+            zip.setLevel(compressionLevel);
+            if (Files.isRegularFile(archive)) {
+                copyEntries(archive, zip, names);
+            }
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (!names.add(name)) continue;
+                long size = Files.size(file);
+                throttle.acquire(size);
+                ZipEntry entry = new ZipEntry(name);
+                entry.setLastModifiedTime(Files.getLastModifiedTime(file));
+                zip.putNextEntry(entry);
+                Files.copy(file, zip);
+                zip.closeEntry();
+            }
+        }
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(tmp, archive, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        for (Path file : files) {
+            throttle.acquire(DELETE_COST_BYTES);
+            Files.deleteIfExists(file);
+        }
+        deleteDirAndEmptyParents(dir, root.resolve(deviceId));
+    }
+
+    private void copyEntries(Path archive, ZipOutputStream zip, Set<String> names) throws IOException, InterruptedException {
+        try (ZipFile existing = new ZipFile(archive.toFile())) {
+            Enumeration<? extends ZipEntry> entries = existing.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry source = entries.nextElement();
+                if (!names.add(source.getName())) continue;
+                throttle.acquire(source.getSize());
+                ZipEntry entry = new ZipEntry(source.getName());
+                FileTime modified = source.getLastModifiedTime();
+                if (modified != null) entry.setLastModifiedTime(modified);
+                zip.putNextEntry(entry);
+                try (InputStream in = existing.getInputStream(source)) {
+                    in.transferTo(zip);
+                }
+                zip.closeEntry();
+            }
+        }
+    }
+
+    private void deleteDerivatives(String deviceId, LocalDate day) throws IOException {
+        Path derivatives = root.resolve(DERIVATIVES_DIR);
+        if (!Files.isDirectory(derivatives)) return;
+        try (DirectoryStream<Path> variants = Files.newDirectoryStream(derivatives, Files::isDirectory)) {
+            for (Path variant : variants) {
+                Path dir = variant.resolve(deviceId).resolve(datePath(day));
+                for (Path file : listFiles(dir)) {
+                    Files.deleteIfExists(file);
+                }
+                deleteDirAndEmptyParents(dir, variant.resolve(deviceId));
+            }
+        }
+    }
+
+    // 删除日期目录以及变空的月、年目录，不删除设备目录本身
+    private static void deleteDirAndEmptyParents(Path dir, Path stopAt) throws IOException {
+        Path current = dir;
+        while (current != null && !current.equals(stopAt) && current.startsWith(stopAt)) {
+            try {
+                Files.deleteIfExists(current);
+            } catch (DirectoryNotEmptyException e) {
+                return;
+            }
+            current = current.getParent();
+        }
+    }
+
+    private Set<String> listDevices() throws IOException {
+        Set<String> devices = new TreeSet<>();
+        if (!Files.isDirectory(root)) return devices;
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(root, Files::isDirectory)) {
+            for (Path dir : dirs) {
+                String name = dir.getFileName().toString();
+                if (!RESERVED_DIRS.contains(name)) devices.add(name);
+            }
+        }
+        Path archives = root.resolve(ImageArchive.ARCHIVE_DIR);
+        if (Files.isDirectory(archives)) {
+            try (DirectoryStream<Path> dirs = Files.newDirectoryStream(archives, Files::isDirectory)) {
+                for (Path dir : dirs) devices.add(dir.getFileName().toString());
+            }
+        }
+        return devices;
+    }
+
+    private static List<LocalDate> listDayDirs(Path deviceDir) throws IOException {
+        List<LocalDate> days = new ArrayList<>();
+        if (!Files.isDirectory(deviceDir)) return days;
+        for (Path year : subdirs(deviceDir, 4)) {
+            for (Path month : subdirs(year, 2)) {
+                for (Path day : subdirs(month, 2)) {
+                    try {
+                        days.add(LocalDate.of(Integer.parseInt(year.getFileName().toString()),
+                                Integer.parseInt(month.getFileName().toString()),
+                                Integer.parseInt(day.getFileName().toString())));
+                    } catch (DateTimeException e) {
+                        logger.debug("忽略非日期目录: {}", day);
+                    }
+                }
+            }
+        }
+        return days;
+    }
+
+    private List<LocalDate> listArchivedDays(String deviceId) throws IOException {
+        List<LocalDate> days = new ArrayList<>();
+        Path dir = root.resolve(ImageArchive.ARCHIVE_DIR).resolve(deviceId);
+        if (!Files.isDirectory(dir)) return days;
+        try (DirectoryStream<Path> archives = Files.newDirectoryStream(dir, "*" + ImageArchive.SUFFIX)) {
+            for (Path archive : archives) {
+                String name = archive.getFileName().toString();
+                try {
+                    days.add(LocalDate.parse(name.substring(0, name.length() - ImageArchive.SUFFIX.length())));
+                } catch (DateTimeException e) {
+                    logger.debug("忽略非归档文件: {}", archive);
+                }
+            }
+        }
+        return days;
+    }
+
+    // 只返回名称为指定位数数字的子目录
+    private static List<Path> subdirs(Path dir, int digits) throws IOException {
+        List<Path> result = new ArrayList<>();
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(dir, Files::isDirectory)) {
+            for (Path child : children) {
+                String name = child.getFileName().toString();
+                if (name.length() == digits && name.chars().allMatch(Character::isDigit)) result.add(child);
+            }
+        }
+        return result;
+    }
+
+    private static List<Path> listFiles(Path dir) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(dir, Files::isRegularFile)) {
+            for (Path child : children) {
+                if (!child.getFileName().toString().endsWith(".tmp")) files.add(child);
+            }
+        } catch (NoSuchFileException e) {
+            // 目录不存在（只剩归档的日期）
+        }
+        return files;
+    }
+
+    private static long sizeOf(List<Path> files) throws IOException {
+        long total = 0;
+        for (Path file : files) {
+            try {
+                total += Files.size(file);
+            } catch (NoSuchFileException e) {
+                // 统计期间被删除
+            }
+        }
+        return total;
+    }
+
+    private Path dayDir(String deviceId, LocalDate day) {
+        return root.resolve(deviceId).resolve(datePath(day));
+    }
+
+    private static String datePath(LocalDate day) {
+        return String.format("%04d/%02d/%02d", day.getYear(), day.getMonthValue(), day.getDayOfMonth());
+    }
+
+    private void record(String action) {
+        if (actionCount.incrementAndGet() <= MAX_ACTIONS) {
+            actions.add(action);
+        }
+    }
+}
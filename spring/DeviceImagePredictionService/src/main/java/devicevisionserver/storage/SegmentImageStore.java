@@ -0,0 +1,461 @@
+package devicevisionserver.storage;
+
+import devicevisionserver.image.ImageFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按设备追加写入的大段文件存储：{path}/segments/{deviceId}/{序号}.seg。
+ * 图片ID为内容的SHA-256，相同内容只保存一次；索引以追加日志形式保存在 index.log，启动时回放。
+ * 段文件整体以只读方式内存映射，读取时直接返回映射区的切片：正在追加的段映射一次，读到映射范围之外时才扩展到当前写入位置；
+ * 已封存段的映射最多缓存 maxMappedSegments 个，按最近使用淘汰（映射区无法主动解除，淘汰后由GC回收）。
+ * 内存索引和 index.log 随保存的图片数增长，需配置保留天数，由 {@link #expire} 删除过期段并压缩索引。
+ */
+public class SegmentImageStore implements ImageStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(SegmentImageStore.class);
+    private static final String INDEX_FILE = "index.log";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final int HASH_BYTES = 32;
+    // 读取时按int偏移切片，单个段不超过2047MB
+    public static final long MAX_SEGMENT_SIZE_MB = 2047;
+    private static final HexFormat HEX = HexFormat.of();
+
+    private record Location(String deviceId, int segment, long offset, int length) {
+    }
+
+    private record Appended(PendingImage image, Location location, long writeNanos) {
+    }
+
+    private interface RecordVisitor {
+        void visit(String id, Location location, int start, int end);
+    }
+
+    // 每个设备当前正在追加的段文件，所有访问都在该对象上同步
+    private static final class ActiveSegment {
+        private final Path dir;
+        private int segment;
+        private FileChannel channel;
+        private long position;
+        private MappedByteBuffer mapped;
+
+        private ActiveSegment(Path dir) {
+            this.dir = dir;
+        }
+    }
+
+    private final Path root;
+    private final long segmentSize;
+    private final boolean fsync;
+    private final Map<String, Location> index = new ConcurrentHashMap<>();
+    private final Map<String, ActiveSegment> activeSegments = new ConcurrentHashMap<>();
+    // 已写入数据、尚未写入索引的图片ID；两个写入线程拿到相同内容时只有先占用的一个写入
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+    private final Map<String, MappedByteBuffer> sealedSegments;
+    // 压缩索引时会替换indexChannel，读写都在indexLock上同步
+    private final Object indexLock = new Object();
+    private FileChannel indexChannel;
+
+    public SegmentImageStore(Path root, long segmentSize, boolean fsync, int maxMappedSegments) throws IOException {
+        this.root = root.resolve("segments").toAbsolutePath().normalize();
+        this.segmentSize = Math.min(segmentSize, Integer.MAX_VALUE);
+        this.fsync = fsync;
+        this.sealedSegments = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, MappedByteBuffer> eldest) {
+                return size() > Math.max(1, maxMappedSegments);
+            }
+        };
+        Files.createDirectories(this.root);
+        this.indexChannel = FileChannel.open(this.root.resolve(INDEX_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        replayIndex();
+        logger.info("段文件存储启动，路径: {}，已索引图片: {}", this.root, index.size());
+    }
+
+    @Override
+    public String allocateId(String deviceId, ImageFormat format, byte[] data) {
+        try {
+            return HEX.formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256不可用", e);
+        }
+    }
+
+    @Override
+    public boolean contains(String id) {
+        return index.containsKey(id);
+    }
+
+    @Override
+    public void writeBatch(List<PendingImage> batch, WriteListener listener) {
+        Map<String, List<PendingImage>> byDevice = new LinkedHashMap<>();
+        for (PendingImage image : batch) {
+            byDevice.computeIfAbsent(sanitize(image.deviceId()), k -> new ArrayList<>()).add(image);
+        }
+
+        List<Appended> appended = new ArrayList<>(batch.size());
+        for (Map.Entry<String, List<PendingImage>> entry : byDevice.entrySet()) {
+            appendDevice(entry.getKey(), entry.getValue(), appended, listener);
+        }
+        if (appended.isEmpty()) {
+            return;
+        }
+
+        // 数据写入后再追加索引，索引中的记录总是指向已写入的数据
+        try {
+            appendIndex(appended);
+        } catch (IOException e) {
+            for (Appended item : appended) {
+                inFlight.remove(item.image().id());
+                listener.onFailed(item.image(), e);
+            }
+            return;
+        }
+        for (Appended item : appended) {
+            // 先写索引再释放占用，其他线程释放后检查索引时一定能看到
+            index.put(item.image().id(), item.location());
+            inFlight.remove(item.image().id());
+            listener.onWritten(item.image(), item.writeNanos());
+        }
+    }
+
+    @Override
+    public ByteBuffer read(String id) throws IOException {
+        Location location = index.get(id);
+        if (location == null) {
+            return null;
+        }
+
+        ActiveSegment active = activeSegments.get(location.deviceId());
+        if (active != null) {
+            synchronized (active) {
+                if (active.segment == location.segment() && active.channel != null) {
+                    long end = location.offset() + location.length();
+                    if (active.mapped == null || active.mapped.capacity() < end) {
+                        active.mapped = active.channel.map(FileChannel.MapMode.READ_ONLY, 0, active.position);
+                    }
+                    return active.mapped.slice((int) location.offset(), location.length());
+                }
+            }
+        }
+
+        String key = segmentKey(location.deviceId(), location.segment());
+        MappedByteBuffer mapped;
+        synchronized (sealedSegments) {
+            mapped = sealedSegments.get(key);
+        }
+        if (mapped == null) {
+            try (FileChannel channel = FileChannel.open(segmentPath(location.deviceId(), location.segment()), StandardOpenOption.READ)) {
+                mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            } catch (NoSuchFileException e) {
+                // 查到位置后该段刚好过期被删除
+                return null;
+            }
+            synchronized (sealedSegments) {
+                MappedByteBuffer existing = sealedSegments.putIfAbsent(key, mapped);
+                if (existing != null) {
+                    mapped = existing;
+                }
+            }
+        }
+        return mapped.slice((int) location.offset(), location.length());
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (ActiveSegment active : activeSegments.values()) {
+            synchronized (active) {
+                if (active.channel != null) {
+                    active.channel.close();
+                    active.channel = null;
+                }
+            }
+        }
+        synchronized (indexLock) {
+            indexChannel.close();
+        }
+    }
+
+    /**
+     * 删除最后写入日期早于 today-保留天数 的段文件，保留天数按设备取 deviceRetentionDays，没有配置时取defaultRetentionDays，0表示永久保留。
+     * 每个设备编号最大的段（正在追加或重启后最后写入的段）不删除，段编号因此不会被重新使用。
+     * 先从内存索引和 index.log 去掉指向这些段的记录再删除文件；dryRun时只统计。
+     */
+    public RetentionReport expire(int defaultRetentionDays, Map<String, Integer> deviceRetentionDays, LocalDate today,
+                                  boolean dryRun) throws IOException {
+        long start = System.currentTimeMillis();
+        Map<String, Integer> daysByDir = new HashMap<>();
+        deviceRetentionDays.forEach((deviceId, days) -> daysByDir.put(sanitize(deviceId), days));
+
+        int devices = 0;
+        long bytes = 0;
+        Map<String, Path> expired = new TreeMap<>();
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(root, Files::isDirectory)) {
+            for (Path dir : dirs) {
+                devices++;
+                String deviceId = dir.getFileName().toString();
+                int days = daysByDir.getOrDefault(deviceId, defaultRetentionDays);
+                if (days <= 0) {
+                    continue;
+                }
+                LocalDate cutoff = today.minusDays(days);
+                int last = lastSegment(dir);
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + SEGMENT_SUFFIX)) {
+                    for (Path file : files) {
+                        int segment = segmentNumber(file);
+                        if (segment < 0 || segment >= last) {
+                            continue;
+                        }
+                        LocalDate lastWrite = LocalDate.ofInstant(Files.getLastModifiedTime(file).toInstant(), ZoneId.systemDefault());
+                        if (lastWrite.isBefore(cutoff)) {
+                            expired.put(segmentKey(deviceId, segment), file);
+                            bytes += Files.size(file);
+                        }
+                    }
+                }
+            }
+        }
+
+        Map<String, Integer> images = new HashMap<>();
+        for (Location location : index.values()) {
+            String key = segmentKey(location.deviceId(), location.segment());
+            if (expired.containsKey(key)) {
+                images.merge(key, 1, Integer::sum);
+            }
+        }
+        List<String> actions = new ArrayList<>(expired.size());
+        for (String key : expired.keySet()) {
+            actions.add("删除段 " + key + SEGMENT_SUFFIX + "：" + images.getOrDefault(key, 0) + " 张图片");
+        }
+
+        long failures = 0;
+        if (!dryRun && !expired.isEmpty()) {
+            // 先去掉索引记录再删除文件，索引不会指向已删除的数据；期间重新上传的相同内容会写入当前段
+            index.values().removeIf(location -> expired.containsKey(segmentKey(location.deviceId(), location.segment())));
+            compactIndex(expired.keySet());
+            synchronized (sealedSegments) {
+                sealedSegments.keySet().removeAll(expired.keySet());
+            }
+            for (Path file : expired.values()) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    failures++;
+                    logger.error("删除段文件失败: {}", file, e);
+                }
+            }
+            logger.info("删除过期段 {} 个，{} 字节，剩余索引图片: {}", expired.size(), bytes, index.size());
+        }
+        return new RetentionReport(dryRun, devices, 0, 0, 0, 0, expired.size(), bytes, failures,
+                System.currentTimeMillis() - start, actions);
+    }
+
+    private void appendDevice(String deviceId, List<PendingImage> images, List<Appended> appended, WriteListener listener) {
+        ActiveSegment active = activeSegments.computeIfAbsent(deviceId, id -> new ActiveSegment(root.resolve(id)));
+        synchronized (active) {
+            int index = 0;
+            try {
+                for (; index < images.size(); index++) {
+                    PendingImage image = images.get(index);
+                    // 先占用再检查索引：与写索引后释放占用的顺序配合，同一内容不会被写入两次
+                    if (!inFlight.add(image.id())) {
+                        listener.onDuplicate(image);
+                        continue;
+                    }
+                    if (contains(image.id())) {
+                        inFlight.remove(image.id());
+                        listener.onDuplicate(image);
+                        continue;
+                    }
+                    long start = System.nanoTime();
+                    int length = image.data().length;
+                    if (active.channel == null || (active.position > 0 && active.position + length > segmentSize)) {
+                        roll(active);
+                    }
+                    long offset = active.position;
+                    ByteBuffer buffer = ByteBuffer.wrap(image.data());
+                    long position = offset;
+                    while (buffer.hasRemaining()) {
+                        position += active.channel.write(buffer, position);
+                    }
+                    active.position = position;
+                    appended.add(new Appended(image, new Location(deviceId, active.segment, offset, length),
+                            System.nanoTime() - start));
+                }
+                if (fsync) {
+                    active.channel.force(false);
+                }
+            } catch (IOException e) {
+                logger.error("写入段文件失败，设备: {}", deviceId, e);
+                // 只有写入失败的这一张已被本线程占用，之后的图片尚未占用
+                inFlight.remove(images.get(index).id());
+                for (; index < images.size(); index++) {
+                    listener.onFailed(images.get(index), e);
+                }
+            }
+        }
+    }
+
+    // 封存当前段文件并开始新段；重启后总是从新段开始写，不会续写可能不完整的旧段
+    private void roll(ActiveSegment active) throws IOException {
+        active.mapped = null;
+        if (active.channel != null) {
+            active.channel.close();
+            active.segment++;
+        } else {
+            Files.createDirectories(active.dir);
+            active.segment = lastSegment(active.dir) + 1;
+        }
+        active.channel = FileChannel.open(active.dir.resolve(active.segment + SEGMENT_SUFFIX),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        active.position = 0;
+    }
+
+    private void appendIndex(List<Appended> appended) throws IOException {
+        int size = 0;
+        List<byte[]> deviceIds = new ArrayList<>(appended.size());
+        for (Appended item : appended) {
+            byte[] deviceId = item.location().deviceId().getBytes(StandardCharsets.UTF_8);
+            deviceIds.add(deviceId);
+            size += HASH_BYTES + 2 + deviceId.length + 4 + 8 + 4;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        for (int i = 0; i < appended.size(); i++) {
+            Location location = appended.get(i).location();
+            buffer.put(HEX.parseHex(appended.get(i).image().id()));
+            buffer.putShort((short) deviceIds.get(i).length);
+            buffer.put(deviceIds.get(i));
+            buffer.putInt(location.segment());
+            buffer.putLong(location.offset());
+            buffer.putInt(location.length());
+        }
+        buffer.flip();
+        synchronized (indexLock) {
+            long position = indexChannel.size();
+            while (buffer.hasRemaining()) {
+                position += indexChannel.write(buffer, position);
+            }
+            if (fsync) {
+                indexChannel.force(false);
+            }
+        }
+    }
+
+    private void replayIndex() throws IOException {
+        long size = indexChannel.size();
+        if (size == 0) return;
+        long valid = readRecords(indexChannel.map(FileChannel.MapMode.READ_ONLY, 0, size),
+                (id, location, start, end) -> index.put(id, location));
+        if (valid < size) {
+            logger.warn("索引文件末尾有不完整记录，截断 {} 字节", size - valid);
+            indexChannel.truncate(valid);
+        }
+    }
+
+    // 把 index.log 中不属于removedSegments的记录写入新文件，再原子替换
+    private void compactIndex(Set<String> removedSegments) throws IOException {
+        synchronized (indexLock) {
+            Path path = root.resolve(INDEX_FILE);
+            Path compacted = root.resolve(INDEX_FILE + ".tmp");
+            ByteBuffer log = indexChannel.map(FileChannel.MapMode.READ_ONLY, 0, indexChannel.size());
+            List<ByteBuffer> kept = new ArrayList<>();
+            readRecords(log.duplicate(), (id, location, start, end) -> {
+                if (!removedSegments.contains(segmentKey(location.deviceId(), location.segment()))) {
+                    kept.add(log.slice(start, end - start));
+                }
+            });
+            try (FileChannel out = FileChannel.open(compacted, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                for (ByteBuffer record : kept) {
+                    while (record.hasRemaining()) {
+                        out.write(record);
+                    }
+                }
+                out.force(false);
+            }
+            indexChannel.close();
+            Files.move(compacted, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            indexChannel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+    }
+
+    // 逐条解析索引记录，返回完整记录的总长度；末尾不完整的记录忽略
+    private static long readRecords(ByteBuffer buffer, RecordVisitor visitor) {
+        int valid = 0;
+        byte[] hash = new byte[HASH_BYTES];
+        while (buffer.remaining() >= HASH_BYTES + 2) {
+            int start = buffer.position();
+            buffer.get(hash);
+            int deviceLength = buffer.getShort() & 0xFFFF;
+            if (buffer.remaining() < deviceLength + 16) {
+                break;
+            }
+            byte[] deviceId = new byte[deviceLength];
+            buffer.get(deviceId);
+            Location location = new Location(new String(deviceId, StandardCharsets.UTF_8),
+                    buffer.getInt(), buffer.getLong(), buffer.getInt());
+            valid = buffer.position();
+            visitor.visit(HEX.formatHex(hash), location, start, valid);
+        }
+        return valid;
+    }
+
+    private int lastSegment(Path dir) throws IOException {
+        int last = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                last = Math.max(last, segmentNumber(file));
+            }
+        }
+        return last;
+    }
+
+    // 段文件名中的序号，非段文件返回-1
+    private static int segmentNumber(Path file) {
+        String name = file.getFileName().toString();
+        try {
+            return Integer.parseInt(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static String segmentKey(String deviceId, int segment) {
+        return deviceId + "/" + segment;
+    }
+
+    private Path segmentPath(String deviceId, int segment) {
+        return root.resolve(deviceId).resolve(segment + SEGMENT_SUFFIX);
+    }
+
+    // 设备ID作为目录名，只保留安全字符
+    private static String sanitize(String deviceId) {
+        return deviceId.replaceAll("[^A-Za-z0-9_-]", "_");
+    }
+}
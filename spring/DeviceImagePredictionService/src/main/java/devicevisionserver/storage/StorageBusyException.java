@@ -0,0 +1,10 @@
+package devicevisionserver.storage;
+
+import java.io.IOException;
+
+// 写入队列已满时抛出，调用方应稍后重试
+public class StorageBusyException extends IOException {
+    public StorageBusyException(String message) {
+        super(message);
+    }
+}
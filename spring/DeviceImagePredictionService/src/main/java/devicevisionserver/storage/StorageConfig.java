@@ -0,0 +1,40 @@
+package devicevisionserver.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+@Configuration
+public class StorageConfig {
+
+    @Value("${image.storage.type:file}")
+    private String type;
+
+    @Value("${image.storage.path:./uploaded-images}")
+    private String imageStoragePath;
+
+    @Value("${image.storage.segment-size-mb:256}")
+    private long segmentSizeMb;
+
+    @Value("${image.storage.fsync:false}")
+    private boolean fsync;
+
+    @Value("${image.storage.max-mapped-segments:64}")
+    private int maxMappedSegments;
+
+    // image.storage.type=segment 时使用按设备追加的段文件存储，否则每帧一个文件；关闭由ImageStorageService负责
+    @Bean(destroyMethod = "")
+    public ImageStore imageStore() throws IOException {
+        if ("segment".equals(type)) {
+            if (segmentSizeMb < 1 || segmentSizeMb > SegmentImageStore.MAX_SEGMENT_SIZE_MB) {
+                throw new IllegalArgumentException("image.storage.segment-size-mb 应在1~"
+                        + SegmentImageStore.MAX_SEGMENT_SIZE_MB + "之间，实际: " + segmentSizeMb);
+            }
+            return new SegmentImageStore(Paths.get(imageStoragePath), segmentSizeMb * 1024 * 1024, fsync, maxMappedSegments);
+        }
+        return new FileImageStore(Paths.get(imageStoragePath), fsync);
+    }
+}
@@ -0,0 +1,13 @@
+package devicevisionserver.storage;
+
+public record StorageStats(int queueDepth,
+                           int queueCapacity,
+                           long written,
+                           long failed,
+                           long rejected,
+                           long deduplicated,
+                           long batches,
+                           double avgWriteMillis,
+                           double maxWriteMillis,
+                           double avgLagMillis) {
+}
@@ -0,0 +1,87 @@
+package devicevisionserver.camera;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FrameSpoolTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void replaysInOrderAndRemovesCommittedFrames() throws Exception {
+        try (FrameSpool spool = new FrameSpool(dir.resolve("cam.spool"), 4096)) {
+            for (int i = 0; i < 5; i++) {
+                assertTrue(spool.append(frame(i, 100), 1000 + i));
+            }
+
+            List<FrameSpool.SpooledFrame> batch = spool.peek(3);
+            assertEquals(3, batch.size());
+            for (int i = 0; i < 3; i++) {
+                assertArrayEquals(frame(i, 100), batch.get(i).data());
+                assertEquals(1000 + i, batch.get(i).capturedAt());
+            }
+
+            spool.commit(batch.get(1).sequence());
+            assertEquals(3, spool.size());
+            assertArrayEquals(frame(2, 100), spool.peek(1).get(0).data());
+        }
+    }
+
+    @Test
+    void evictsOldestFramesWhenFull() throws Exception {
+        try (FrameSpool spool = new FrameSpool(dir.resolve("cam.spool"), 1000)) {
+            // 每条记录 20 字节头 + 180 字节数据，容量只够 5 条
+            for (int i = 0; i < 12; i++) {
+                assertTrue(spool.append(frame(i, 180), i));
+            }
+            assertEquals(5, spool.size());
+            assertEquals(7, spool.evicted());
+
+            List<FrameSpool.SpooledFrame> frames = spool.peek(10);
+            for (int i = 0; i < frames.size(); i++) {
+                assertArrayEquals(frame(7 + i, 180), frames.get(i).data());
+            }
+            assertFalse(spool.append(new byte[1000], 0));
+        }
+    }
+
+    @Test
+    void framesWrappingAroundFileEndSurviveReopen() throws Exception {
+        Path file = dir.resolve("cam.spool");
+        try (FrameSpool spool = new FrameSpool(file, 1100)) {
+            for (int i = 0; i < 4; i++) {
+                spool.append(frame(i, 230), i);
+            }
+            spool.commit(spool.peek(2).get(1).sequence());
+            // 新记录跨越文件末尾写回开头
+            spool.append(frame(4, 230), 4);
+            spool.append(frame(5, 230), 5);
+        }
+
+        try (FrameSpool reopened = new FrameSpool(file, 1100)) {
+            List<FrameSpool.SpooledFrame> frames = reopened.peek(10);
+            assertEquals(4, frames.size());
+            for (int i = 0; i < frames.size(); i++) {
+                assertArrayEquals(frame(2 + i, 230), frames.get(i).data());
+                assertEquals(2 + i, frames.get(i).capturedAt());
+            }
+        }
+    }
+
+    private static byte[] frame(int seed, int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) (seed * 31 + i);
+        }
+        return data;
+    }
+}
@@ -0,0 +1,106 @@
+package devicevisionserver.recognition;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MicroBatcherTest {
+
+    @Test
+    void mergesRequestsArrivingWhileWorkerIsBusy() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        try (MicroBatcher<Integer, Integer> batcher = new MicroBatcher<>(batch -> {
+            batchSizes.add(batch.size());
+            release.await(5, TimeUnit.SECONDS);
+            return batch.stream().map(i -> i * 2).toList();
+        }, 8, 5, 1, 64, "test-batch")) {
+            CompletableFuture<Integer> first = batcher.submit(1);
+            waitUntil(() -> !batchSizes.isEmpty());
+
+            List<CompletableFuture<Integer>> rest = new ArrayList<>();
+            for (int i = 2; i <= 6; i++) {
+                rest.add(batcher.submit(i));
+            }
+            release.countDown();
+
+            assertEquals(2, first.get(5, TimeUnit.SECONDS));
+            for (int i = 0; i < rest.size(); i++) {
+                assertEquals((i + 2) * 2, rest.get(i).get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(List.of(1, 5), batchSizes);
+        }
+    }
+
+    @Test
+    void respectsMaxBatchSize() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        try (MicroBatcher<Integer, Integer> batcher = new MicroBatcher<>(batch -> {
+            batchSizes.add(batch.size());
+            release.await(5, TimeUnit.SECONDS);
+            return batch;
+        }, 3, 5, 1, 64, "test-batch")) {
+            batcher.submit(0);
+            waitUntil(() -> !batchSizes.isEmpty());
+            List<CompletableFuture<Integer>> rest = new ArrayList<>();
+            for (int i = 1; i <= 7; i++) {
+                rest.add(batcher.submit(i));
+            }
+            release.countDown();
+            for (CompletableFuture<Integer> future : rest) {
+                future.get(5, TimeUnit.SECONDS);
+            }
+            assertEquals(List.of(1, 3, 3, 1), batchSizes);
+        }
+    }
+
+    @Test
+    void rejectsWhenQueueIsFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        try (MicroBatcher<Integer, Integer> batcher = new MicroBatcher<>(batch -> {
+            release.await(5, TimeUnit.SECONDS);
+            return batch;
+        }, 1, 0, 1, 2, "test-batch")) {
+            batcher.submit(0);
+            waitUntil(() -> batcher.queueDepth() == 0);
+            batcher.submit(1);
+            batcher.submit(2);
+
+            CompletableFuture<Integer> rejected = batcher.submit(3);
+            ExecutionException e = assertThrows(ExecutionException.class, () -> rejected.get(1, TimeUnit.SECONDS));
+            assertInstanceOf(RejectedExecutionException.class, e.getCause());
+            release.countDown();
+        }
+    }
+
+    @Test
+    void failsEveryRequestOfAFailedBatch() {
+        try (MicroBatcher<Integer, Integer> batcher = new MicroBatcher<>(batch -> {
+            throw new IllegalStateException("boom");
+        }, 4, 1, 1, 8, "test-batch")) {
+            CompletableFuture<Integer> future = batcher.submit(1);
+            ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    private static void waitUntil(java.util.function.BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package devicevisionserver.recognition;
+
+import devicevisionserver.ImageRecognitionService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RecognitionJobServiceTest {
+
+    private RecognitionJobService service;
+
+    @AfterEach
+    void stop() throws InterruptedException {
+        if (service != null) {
+            service.stop();
+        }
+    }
+
+    @Test
+    void reserveFailsOnceWorkersAndQueueAreFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        service = newService(1, 1, (deviceId, bytes) -> {
+            release.await(5, TimeUnit.SECONDS);
+            return "ok";
+        });
+
+        RecognitionJob running = service.submit(service.reserve(), "d1", new byte[1], "a");
+        RecognitionJob queued = service.submit(service.reserve(), "d1", new byte[1], "b");
+        assertNull(service.reserve());
+
+        release.countDown();
+        waitUntil(() -> running.isFinished() && queued.isFinished());
+        try (RecognitionJobService.Reservation reservation = service.reserve()) {
+            assertNotNull(reservation);
+        }
+    }
+
+    @Test
+    void heldReservationIsNeverRejectedWhileQueueIsSaturated() throws Exception {
+        service = newService(1, 1, (deviceId, bytes) -> "ok");
+        AtomicInteger submitted = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        ExecutorService clients = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                futures.add(clients.submit(() -> {
+                    for (int i = 0; i < 20000; i++) {
+                        try (RecognitionJobService.Reservation reservation = service.reserve()) {
+                            if (reservation == null) {
+                                continue;
+                            }
+                            try {
+                                service.submit(reservation, "d1", new byte[1], "img");
+                                submitted.incrementAndGet();
+                            } catch (RejectedExecutionException e) {
+                                rejected.incrementAndGet();
+                            }
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            clients.shutdownNow();
+        }
+        assertEquals(0, rejected.get());
+        assertTrue(submitted.get() > 0);
+    }
+
+    private interface Recognizer {
+        String recognize(String deviceId, byte[] imageBytes) throws Exception;
+    }
+
+    private static RecognitionJobService newService(int workers, int queueCapacity, Recognizer recognizer) {
+        ImageRecognitionService recognition = new ImageRecognitionService() {
+            @Override
+            public String recognize(String deviceId, byte[] imageBytes) {
+                try {
+                    return recognizer.recognize(deviceId, imageBytes);
+                } catch (Exception e) {
+                    throw new RecognitionException(e.getMessage(), e);
+                }
+            }
+        };
+        RecognitionJobService service = new RecognitionJobService();
+        ReflectionTestUtils.setField(service, "imageRecognitionService", recognition);
+        ReflectionTestUtils.setField(service, "workers", workers);
+        ReflectionTestUtils.setField(service, "queueCapacity", queueCapacity);
+        ReflectionTestUtils.setField(service, "resultTtlMillis", 60_000L);
+        service.start();
+        return service;
+    }
+
+    private static void waitUntil(java.util.function.BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("等待超时");
+            }
+            Thread.sleep(5);
+        }
+    }
+}
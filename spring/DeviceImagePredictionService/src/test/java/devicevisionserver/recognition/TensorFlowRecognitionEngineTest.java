@@ -0,0 +1,84 @@
+package devicevisionserver.recognition;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.tensorflow.DataType;
+import org.tensorflow.Graph;
+import org.tensorflow.Operation;
+import org.tensorflow.Tensor;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TensorFlowRecognitionEngineTest {
+
+    /**
+     * 生成一个极小的测试模型：对输入的空间维度求均值得到RGB三通道得分，再做softmax，
+     * 因此纯色图片应被识别为对应颜色
+     */
+    private static Path writeTestModel(Path dir) throws IOException {
+        try (Graph graph = new Graph();
+             Tensor<Integer> axes = Tensor.create(new int[]{1, 2}, Integer.class)) {
+            Operation input = graph.opBuilder("Placeholder", "input")
+                    .setAttr("dtype", DataType.FLOAT)
+                    .build();
+            Operation axesConst = graph.opBuilder("Const", "axes")
+                    .setAttr("dtype", DataType.INT32)
+                    .setAttr("value", axes)
+                    .build();
+            Operation mean = graph.opBuilder("Mean", "mean")
+                    .addInput(input.output(0))
+                    .addInput(axesConst.output(0))
+                    .build();
+            graph.opBuilder("Softmax", "output")
+                    .addInput(mean.output(0))
+                    .build();
+
+            Path model = dir.resolve("color.pb");
+            Files.write(model, graph.toGraphDef());
+            return model;
+        }
+    }
+
+    private static byte[] solidJpeg(Color color) throws IOException {
+        BufferedImage image = new BufferedImage(64, 48, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(color);
+        g.fillRect(0, 0, image.getWidth(), image.getHeight());
+        g.dispose();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", out);
+        return out.toByteArray();
+    }
+
+    @Test
+    void recognizesBatchWithSharedGraphSessions(@TempDir Path dir) throws Exception {
+        Path model = writeTestModel(dir);
+        Path labels = Files.write(dir.resolve("labels.txt"), List.of("red", "green", "blue"));
+
+        try (TensorFlowRecognitionEngine engine = new TensorFlowRecognitionEngine(
+                model, labels, "input", "output", 32, 2, 1)) {
+            assertEquals(2, engine.concurrency());
+
+            float[] red = engine.preprocess(solidJpeg(Color.RED));
+            float[] blue = engine.preprocess(solidJpeg(Color.BLUE));
+            assertEquals(32 * 32 * 3, red.length);
+
+            List<String> results = engine.infer(List.of(red, blue, red));
+            assertEquals(3, results.size());
+            assertTrue(results.get(0).startsWith("red"), results.get(0));
+            assertTrue(results.get(1).startsWith("blue"), results.get(1));
+            assertTrue(results.get(2).startsWith("red"), results.get(2));
+        }
+    }
+}
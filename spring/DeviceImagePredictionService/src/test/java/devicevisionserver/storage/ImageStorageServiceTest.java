@@ -0,0 +1,29 @@
+package devicevisionserver.storage;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ImageStorageServiceTest {
+
+    @Test
+    void acceptsPlainDeviceIds() {
+        assertTrue(ImageStorageService.isValidDeviceId("esp32_cam_gate"));
+        assertTrue(ImageStorageService.isValidDeviceId("cam-01.lobby"));
+    }
+
+    @Test
+    void rejectsPathsAndReservedDirectories() {
+        assertFalse(ImageStorageService.isValidDeviceId(null));
+        assertFalse(ImageStorageService.isValidDeviceId(""));
+        assertFalse(ImageStorageService.isValidDeviceId(".."));
+        assertFalse(ImageStorageService.isValidDeviceId("../etc"));
+        assertFalse(ImageStorageService.isValidDeviceId("cam/1"));
+        assertFalse(ImageStorageService.isValidDeviceId("cam\\1"));
+        assertFalse(ImageStorageService.isValidDeviceId("archive"));
+        assertFalse(ImageStorageService.isValidDeviceId("Derivatives"));
+        assertFalse(ImageStorageService.isValidDeviceId("segments"));
+        assertFalse(ImageStorageService.isValidDeviceId("x".repeat(65)));
+    }
+}
@@ -0,0 +1,87 @@
+package devicevisionserver.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RetentionWalkerTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2024, 3, 10);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void archivesClosedDaysAndKeepsToday() throws Exception {
+        write("cam1/2024/03/09/a.jpg", "a");
+        write("cam1/2024/03/09/b.jpg", "b");
+        write("cam1/2024/03/10/c.jpg", "c");
+
+        RetentionReport report = walker(0, Map.of(), false).run(ForkJoinPool.commonPool(), TODAY);
+
+        assertEquals(1, report.daysArchived());
+        assertEquals(2, report.filesArchived());
+        assertFalse(Files.exists(dir.resolve("cam1/2024/03/09")));
+        assertTrue(Files.exists(dir.resolve("cam1/2024/03/10/c.jpg")));
+        assertEquals("a", text(ImageArchive.read(dir.toAbsolutePath(), "cam1/2024/03/09/a.jpg")));
+        assertNull(ImageArchive.read(dir.toAbsolutePath(), "cam1/2024/03/09/missing.jpg"));
+    }
+
+    @Test
+    void deletesExpiredDaysPerDevice() throws Exception {
+        write("cam1/2024/03/01/a.jpg", "a");
+        write("cam2/2024/03/01/b.jpg", "b");
+        write("derivatives/thumb/cam1/2024/03/01/a.jpg", "t");
+        walker(0, Map.of(), false).run(ForkJoinPool.commonPool(), TODAY);
+
+        // cam1只保留3天，cam2使用默认（永久）
+        RetentionReport report = walker(0, Map.of("cam1", 3), false).run(ForkJoinPool.commonPool(), TODAY);
+
+        assertEquals(1, report.daysDeleted());
+        assertFalse(Files.exists(ImageArchive.path(dir.toAbsolutePath(), "cam1", LocalDate.of(2024, 3, 1))));
+        assertFalse(Files.exists(dir.resolve("derivatives/thumb/cam1/2024/03/01/a.jpg")));
+        assertEquals("b", text(ImageArchive.read(dir.toAbsolutePath(), "cam2/2024/03/01/b.jpg")));
+    }
+
+    @Test
+    void dryRunDoesNotTouchFiles() throws Exception {
+        write("cam1/2024/03/01/a.jpg", "a");
+        write("cam1/2024/03/09/b.jpg", "b");
+
+        RetentionReport report = walker(5, Map.of(), true).run(ForkJoinPool.commonPool(), TODAY);
+
+        assertTrue(report.dryRun());
+        assertEquals(1, report.daysDeleted());
+        assertEquals(1, report.daysArchived());
+        assertEquals(2, report.actions().size());
+        assertTrue(Files.exists(dir.resolve("cam1/2024/03/01/a.jpg")));
+        assertTrue(Files.exists(dir.resolve("cam1/2024/03/09/b.jpg")));
+        assertFalse(Files.exists(dir.resolve(ImageArchive.ARCHIVE_DIR)));
+    }
+
+    private RetentionWalker walker(int retentionDays, Map<String, Integer> deviceDays, boolean dryRun) {
+        return new RetentionWalker(dir, 1, retentionDays, deviceDays, 1, new IoThrottle(0), dryRun);
+    }
+
+    private void write(String relative, String content) throws Exception {
+        Path file = dir.resolve(relative);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content);
+    }
+
+    private static String text(ByteBuffer buffer) {
+        return StandardCharsets.UTF_8.decode(buffer).toString();
+    }
+}
@@ -0,0 +1,120 @@
+package devicevisionserver.storage;
+
+import devicevisionserver.image.ImageFormat;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SegmentImageStoreTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2024, 3, 10);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void expireDeletesOldSegmentsAndCompactsIndex() throws Exception {
+        String a;
+        String b;
+        String c;
+        long indexBefore;
+        // 段大小小于单张图片，每张图片单独占一个段
+        SegmentImageStore store = new SegmentImageStore(dir, 4, false, 4);
+        try {
+            a = write(store, "cam1", "aaaaaaaa");
+            b = write(store, "cam1", "bbbbbbbb");
+            c = write(store, "cam1", "cccccccc");
+            age("cam1/1.seg", 10);
+            age("cam1/2.seg", 10);
+            age("cam1/3.seg", 10);
+            indexBefore = Files.size(dir.resolve("segments/index.log"));
+
+            RetentionReport dryRun = store.expire(3, Map.of(), TODAY, true);
+            assertEquals(2, dryRun.filesDeleted());
+            assertTrue(store.contains(a));
+
+            RetentionReport report = store.expire(3, Map.of(), TODAY, false);
+            assertEquals(2, report.filesDeleted());
+            assertEquals(List.of("删除段 cam1/1.seg：1 张图片", "删除段 cam1/2.seg：1 张图片"), report.actions());
+            assertFalse(store.contains(a));
+            assertFalse(store.contains(b));
+            assertNull(store.read(a));
+            // 编号最大的段不删除，即使已过期
+            assertTrue(Files.exists(dir.resolve("segments/cam1/3.seg")));
+            assertTrue(Files.size(dir.resolve("segments/index.log")) < indexBefore);
+
+            // 压缩后的索引仍可追加
+            write(store, "cam1", "dddddddd");
+        } finally {
+            store.close();
+        }
+
+        SegmentImageStore reopened = new SegmentImageStore(dir, 4, false, 4);
+        try {
+            assertFalse(reopened.contains(a));
+            assertFalse(reopened.contains(b));
+            assertNotNull(reopened.read(c));
+            assertEquals("cccccccc", StandardCharsets.UTF_8.decode(reopened.read(c)).toString());
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    void deviceRetentionOverridesDefault() throws Exception {
+        SegmentImageStore store = new SegmentImageStore(dir, 4, false, 4);
+        try {
+            write(store, "cam1", "aaaaaaaa");
+            write(store, "cam1", "bbbbbbbb");
+            write(store, "cam2", "cccccccc");
+            write(store, "cam2", "dddddddd");
+            age("cam1/1.seg", 10);
+            age("cam2/1.seg", 10);
+
+            // 默认永久保留，只有cam2配置了保留天数
+            RetentionReport report = store.expire(0, Map.of("cam2", 3), TODAY, false);
+
+            assertEquals(1, report.filesDeleted());
+            assertTrue(Files.exists(dir.resolve("segments/cam1/1.seg")));
+            assertFalse(Files.exists(dir.resolve("segments/cam2/1.seg")));
+        } finally {
+            store.close();
+        }
+    }
+
+    private static String write(SegmentImageStore store, String deviceId, String content) {
+        byte[] data = content.getBytes(StandardCharsets.UTF_8);
+        String id = store.allocateId(deviceId, ImageFormat.JPEG, data);
+        store.writeBatch(List.of(new PendingImage(id, deviceId, ImageFormat.JPEG, data, System.nanoTime())),
+                new ImageStore.WriteListener() {
+                    @Override
+                    public void onWritten(PendingImage image, long writeNanos) {
+                    }
+
+                    @Override
+                    public void onFailed(PendingImage image, Exception e) {
+                        throw new AssertionError(e);
+                    }
+                });
+        return id;
+    }
+
+    private void age(String segment, int days) throws Exception {
+        Files.setLastModifiedTime(dir.resolve("segments").resolve(segment),
+                FileTime.from(TODAY.minusDays(days).atStartOfDay(ZoneId.systemDefault()).toInstant()));
+    }
+}
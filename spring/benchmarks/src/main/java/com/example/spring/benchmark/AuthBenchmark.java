@@ -0,0 +1,63 @@
+package com.example.spring.benchmark;
+
+import com.example.spring.util.JwtUtil;
+import com.example.spring.util.MD5Util;
+import io.jsonwebtoken.JwtParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 用户服务每个请求都会执行的认证路径：登录时的密码摘要和签发token，/user/info 的token解析
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AuthBenchmark {
+
+    // 与 application.properties 中的 jwt.secret 长度一致
+    private static final String SECRET = "bAjLriX6deZm4cHprtkqycCpu4ZWWwYxF7FkF2aV/XKw90ilP0WJMQ3j9TB0wH6sG/ZGZRvMM4ClyIOcCd6Ehg==";
+    private static final long EXPIRATION = 86_400_000L;
+
+    private String token;
+    private JwtParser parser;
+
+    @Setup
+    public void setUp() {
+        token = JwtUtil.generateToken("bench_user", SECRET, EXPIRATION);
+        parser = JwtUtil.newParser(SECRET);
+    }
+
+    @Benchmark
+    public String md5Encrypt() {
+        return MD5Util.encrypt("password123");
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return JwtUtil.generateToken("bench_user", SECRET, EXPIRATION);
+    }
+
+    @Benchmark
+    public String parseToken() {
+        return JwtUtil.parseAccount(token, SECRET);
+    }
+
+    // 复用同一个解析器，仍然每次验证签名
+    @Benchmark
+    public String parseTokenReusedParser() {
+        return parser.parseClaimsJws(token).getBody().getSubject();
+    }
+}
@@ -0,0 +1,80 @@
+package devicevisionserver.benchmark;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Random;
+
+/**
+ * 生成接近指定大小的JPEG测试帧：渐变背景加噪声，压缩率接近真实摄像头画面。固定随机种子，每次运行结果相同
+ */
+public final class Frames {
+
+    private Frames() {
+    }
+
+    public static byte[] jpeg(int targetBytes) {
+        return jpeg(targetBytes, -1);
+    }
+
+    /**
+     * 不同seed生成画面结构不同的帧（叠加按seed随机明暗的8x8色块），感知哈希互不相同；seed为负时只有渐变和噪声
+     */
+    public static byte[] jpeg(int targetBytes, long seed) {
+        // 先按经验值估算尺寸，再按实际压缩率修正两次
+        double bytesPerPixel = 0.5;
+        byte[] frame = null;
+        for (int i = 0; i < 3; i++) {
+            int width = (int) Math.sqrt(targetBytes / bytesPerPixel * 4 / 3);
+            int height = width * 3 / 4;
+            frame = encode(render(width, height, seed), 0.9f);
+            bytesPerPixel = (double) frame.length / (width * height);
+        }
+        return frame;
+    }
+
+    private static BufferedImage render(int width, int height, long seed) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(42);
+        int[] blocks = new int[64];
+        if (seed >= 0) {
+            Random blockRandom = new Random(seed);
+            for (int i = 0; i < blocks.length; i++) {
+                blocks[i] = blockRandom.nextInt(96) - 48;
+            }
+        }
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int noise = random.nextInt(48) + blocks[(y * 8 / height) * 8 + x * 8 / width];
+                int r = Math.max(0, Math.min(255, x * 200 / width + noise));
+                int g = Math.max(0, Math.min(255, y * 200 / height + noise));
+                int b = Math.max(0, Math.min(255, (x + y) * 100 / (width + height) + noise));
+                image.setRGB(x, y, (r << 16) | (g << 8) | b);
+            }
+        }
+        return image;
+    }
+
+    private static byte[] encode(BufferedImage image, float quality) {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpg").next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream stream = ImageIO.createImageOutputStream(out)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.setOutput(stream);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,59 @@
+package devicevisionserver.controller;
+
+import devicevisionserver.benchmark.Frames;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 摄像头端每帧上传前的处理：Base64编码并拼接JSON请求体，最后转成UTF-8字节发送
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CameraUploadBenchmark {
+
+    @Param({"100", "1024", "5120"})
+    public int frameKb;
+
+    private byte[] frame;
+    private String base64;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        frame = Frames.jpeg(frameKb * 1024);
+        base64 = Camera.ImageUtil.convertToBase64(frame);
+    }
+
+    @Benchmark
+    public String convertToBase64() {
+        return Camera.ImageUtil.convertToBase64(frame);
+    }
+
+    @Benchmark
+    public String buildJsonBody() {
+        return Camera.buildJsonBody("esp32_cam_bench", base64);
+    }
+
+    // 完整路径：编码、拼接并转成请求体字节，与 BodyPublishers.ofString 的开销一致
+    @Benchmark
+    public byte[] encodeAndBuildBody() {
+        String body = Camera.buildJsonBody("esp32_cam_bench", Camera.ImageUtil.convertToBase64(frame));
+        return body.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,74 @@
+package devicevisionserver.controller;
+
+import devicevisionserver.benchmark.Frames;
+import devicevisionserver.image.ImageFormat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 接收端每帧都要执行的路径：Base64去前缀解码，以及落盘前的图片处理。
+ * legacy* 为改动前的实现（正则去前缀；ImageIO解码再重新编码JPEG），用于对比；落盘本身不计入。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IngestBenchmark {
+
+    @Param({"100", "1024", "5120"})
+    public int frameKb;
+
+    private byte[] frame;
+    private String dataUri;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        frame = Frames.jpeg(frameKb * 1024);
+        dataUri = "data:image/jpeg;base64," + Base64.getEncoder().encodeToString(frame);
+    }
+
+    @Benchmark
+    public byte[] legacyDecodeBase64() {
+        String cleanBase64 = dataUri.replaceAll("^data:image/.*;base64,", "");
+        return Base64.getDecoder().decode(cleanBase64);
+    }
+
+    @Benchmark
+    public byte[] decodeBase64() {
+        return DeviceController.decodeBase64Image(dataUri);
+    }
+
+    @Benchmark
+    public byte[] legacyReencode() throws IOException {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(frame));
+        ByteArrayOutputStream out = new ByteArrayOutputStream(frame.length);
+        ImageIO.write(image, "jpg", out);
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public boolean validate() {
+        ImageFormat format = ImageFormat.detect(frame);
+        return format != null && format.isComplete(frame);
+    }
+}
@@ -0,0 +1,65 @@
+package devicevisionserver.loadtest;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 无锁延迟直方图（微秒）：按2的幂分段，每段再等分为64个桶，相对误差约1.5%，内存固定，可多线程同时记录
+ */
+final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int SEGMENTS = 64 - SUB_BUCKET_BITS;
+
+    private final AtomicLongArray counts = new AtomicLongArray((SEGMENTS + 1) * SUB_BUCKETS);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    void record(long micros) {
+        long value = Math.max(0, micros);
+        counts.incrementAndGet(index(value));
+        total.incrementAndGet();
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    long count() {
+        return total.get();
+    }
+
+    long max() {
+        return max.get();
+    }
+
+    /**
+     * 返回分位数q(0~1)对应的延迟上界（微秒）
+     */
+    long percentile(double q) {
+        long n = total.get();
+        if (n == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(q * n));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    // 小于64的值直接落在第0段；否则按最高位所在段，取其后6位作为段内桶号
+    private static int index(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int segment = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS + 1;
+        int sub = (int) (value >>> (segment - 1)) & (SUB_BUCKETS - 1);
+        return segment * SUB_BUCKETS + sub;
+    }
+
+    private static long upperBound(int index) {
+        int segment = index / SUB_BUCKETS;
+        int sub = index % SUB_BUCKETS;
+        if (segment == 0) return sub;
+        return ((long) (SUB_BUCKETS + sub) << (segment - 1)) + (1L << (segment - 1)) - 1;
+    }
+}
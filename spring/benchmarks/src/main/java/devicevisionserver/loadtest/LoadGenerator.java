@@ -0,0 +1,220 @@
+package devicevisionserver.loadtest;
+
+import devicevisionserver.benchmark.Frames;
+
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 模拟N个设备按目标速率向DeviceVisionServer上传帧，输出吞吐、延迟分位数和错误分类。
+ * 开环发送：按计划时间发出请求而不等上一个返回，延迟从计划发送时间算起，服务端变慢时排队时间也计入延迟；
+ * 在途请求超过 max-in-flight 时该帧记为 client_saturated 而不是推迟发送。
+ * 启动：java -cp benchmarks.jar devicevisionserver.loadtest.LoadGenerator --devices=50 --rate=200 --duration-s=60 --mode=binary
+ */
+public class LoadGenerator {
+
+    private static final Pattern STATUS_CODE = Pattern.compile("\"statusCode\"\\s*:\\s*(\\d+)");
+
+    public enum Mode {
+        // Base64 JSON，与Camera上传方式相同
+        JSON("/api/receive"),
+        // 请求体为JPEG字节，设备信息在请求头中
+        BINARY("/api/receive/binary");
+
+        private final String path;
+
+        Mode(String path) {
+            this.path = path;
+        }
+    }
+
+    private final URI target;
+    private final Mode mode;
+    private final int devices;
+    private final double rate;
+    private final HttpClient client;
+    private final ExecutorService clientExecutor;
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+    private final byte[][] frames;
+    private final String[] base64Frames;
+
+    private volatile boolean recording;
+    private long nextSequence;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder succeeded = new LongAdder();
+    private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+
+    /**
+     * @param baseUrl        服务地址，如 http://localhost:8080
+     * @param devices        模拟设备数，设备ID为 load_device_{i}，请求在设备间轮转
+     * @param rate           所有设备合计的目标帧率（帧/秒）
+     * @param frameKb        每帧JPEG大小
+     * @param distinctFrames 不同画面的帧数，避免全部命中服务端的识别结果缓存
+     */
+    public LoadGenerator(String baseUrl, Mode mode, int devices, double rate, int frameKb, int distinctFrames,
+                         int maxInFlight, int clientThreads) {
+        this.target = URI.create(baseUrl + mode.path);
+        this.mode = mode;
+        this.devices = devices;
+        this.rate = rate;
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.clientExecutor = Executors.newFixedThreadPool(clientThreads);
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(clientExecutor)
+                .build();
+        this.frames = new byte[Math.max(1, distinctFrames)][];
+        this.base64Frames = new String[frames.length];
+        for (int i = 0; i < frames.length; i++) {
+            frames[i] = Frames.jpeg(frameKb * 1024, i);
+            base64Frames[i] = Base64.getEncoder().encodeToString(frames[i]);
+        }
+    }
+
+    /**
+     * 先预热warmupSeconds（结果不计入），再按计划速率发送durationSeconds，等待在途请求结束后返回报告
+     */
+    public String run(int warmupSeconds, int durationSeconds) throws InterruptedException {
+        send(warmupSeconds);
+        recording = true;
+        long start = System.nanoTime();
+        long planned = send(durationSeconds);
+        // 最多等待发送超时时间，让在途请求完成
+        inFlight.tryAcquire(maxInFlight, 30, TimeUnit.SECONDS);
+        long elapsedNanos = System.nanoTime() - start;
+        recording = false;
+        clientExecutor.shutdownNow();
+        return report(elapsedNanos, planned);
+    }
+
+    private long send(int seconds) {
+        long count = (long) (seconds * rate);
+        long intervalNanos = (long) (1e9 / rate);
+        long start = System.nanoTime();
+        for (long i = 0; i < count; i++) {
+            long intended = start + i * intervalNanos;
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            long sequence = nextSequence++;
+            sendOne("load_device_" + (sequence % devices), (int) (sequence % frames.length), intended);
+        }
+        return count;
+    }
+
+    private void sendOne(String deviceId, int frameIndex, long intendedNanos) {
+        boolean counted = recording;
+        if (counted) sent.increment();
+        if (!inFlight.tryAcquire()) {
+            if (counted) error("client_saturated");
+            return;
+        }
+        client.sendAsync(request(deviceId, frameIndex), HttpResponse.BodyHandlers.ofString())
+                .whenComplete((response, e) -> {
+                    inFlight.release();
+                    if (!counted) return;
+                    latency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intendedNanos));
+                    if (e != null) {
+                        error(classify(e));
+                    } else if (response.statusCode() != 200) {
+                        error("http_" + response.statusCode());
+                    } else {
+                        // 服务端多数错误以HTTP 200返回，状态码在响应体的statusCode中
+                        Matcher matcher = STATUS_CODE.matcher(response.body());
+                        String status = matcher.find() ? matcher.group(1) : "unknown";
+                        if ("200".equals(status)) {
+                            succeeded.increment();
+                        } else {
+                            error("status_" + status);
+                        }
+                    }
+                });
+    }
+
+    private HttpRequest request(String deviceId, int frameIndex) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder().uri(target).timeout(Duration.ofSeconds(30));
+        if (mode == Mode.BINARY) {
+            return builder.header("Content-Type", "image/jpeg")
+                    .header("X-Username", "load_test")
+                    .header("X-Token", "valid_token")
+                    .header("X-Device-Id", deviceId)
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(frames[frameIndex]))
+                    .build();
+        }
+        String body = "{\"username\":\"load_test\",\"token\":\"valid_token\",\"deviceId\":\"" + deviceId
+                + "\",\"imageData\":\"" + base64Frames[frameIndex] + "\"}";
+        return builder.header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8))
+                .build();
+    }
+
+    private static String classify(Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        if (cause instanceof HttpTimeoutException) return "timeout";
+        if (cause instanceof ConnectException) return "connect";
+        return cause.getClass().getSimpleName();
+    }
+
+    private void error(String kind) {
+        errors.computeIfAbsent(kind, k -> new LongAdder()).increment();
+    }
+
+    private String report(long elapsedNanos, long planned) {
+        double seconds = elapsedNanos / 1e9;
+        long completed = latency.count();
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("目标: %s %s，%d 个设备，目标 %.1f 帧/秒%n", mode, target, devices, rate));
+        out.append(String.format("计划 %d 帧，发出 %d，完成 %d，成功 %d，耗时 %.1fs%n",
+                planned, sent.sum(), completed, succeeded.sum(), seconds));
+        out.append(String.format("吞吐: 完成 %.1f 帧/秒，成功 %.1f 帧/秒%n", completed / seconds, succeeded.sum() / seconds));
+        out.append(String.format("延迟(ms): p50=%.1f p90=%.1f p99=%.1f p999=%.1f max=%.1f%n",
+                latency.percentile(0.5) / 1000.0, latency.percentile(0.9) / 1000.0, latency.percentile(0.99) / 1000.0,
+                latency.percentile(0.999) / 1000.0, latency.max() / 1000.0));
+        if (errors.isEmpty()) {
+            out.append("错误: 无").append(System.lineSeparator());
+        } else {
+            out.append("错误:").append(System.lineSeparator());
+            new TreeMap<>(errors).forEach((kind, count) ->
+                    out.append(String.format("  %-20s %d%n", kind, count.sum())));
+        }
+        return out.toString();
+    }
+
+    public static void main(String[] argv) throws Exception {
+        Args args = new Args(argv);
+        LoadGenerator generator = new LoadGenerator(
+                args.get("url", "http://localhost:8080"),
+                Mode.valueOf(args.get("mode", "binary").toUpperCase()),
+                args.getInt("devices", 50),
+                args.getDouble("rate", 100),
+                args.getInt("frame-kb", 100),
+                args.getInt("distinct-frames", 16),
+                args.getInt("max-in-flight", 512),
+                args.getInt("client-threads", 8));
+        System.out.print(generator.run(args.getInt("warmup-s", 10), args.getInt("duration-s", 60)));
+    }
+}
@@ -0,0 +1,156 @@
+package devicevisionserver.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import devicevisionserver.benchmark.Frames;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 模拟ESP32摄像头：提供 /capture、/set-resolution、/take-snapshot，只监听localhost。
+ * 路径前缀任意，因此一个进程可以充当多个摄像头：camera.endpoints[n].base-url=http://localhost:8181/cam{n}。
+ * 启动：java -cp benchmarks.jar devicevisionserver.loadtest.StubCameraServer --port=8181 --frame-kb=100 --latency-ms=50
+ */
+public class StubCameraServer implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(StubCameraServer.class);
+
+    static {
+        // JDK HttpServer默认开启Nagle，与客户端的延迟ACK叠加后每个请求多出约40ms
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final int latencyMillis;
+    private final int jitterMillis;
+    private final double errorRate;
+    private final int frameKb;
+    private volatile byte[] frame;
+    private final LongAdder captures = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    /**
+     * @param frameKb       /capture 返回的JPEG大小
+     * @param latencyMillis 每个请求的固定延迟，模拟摄像头采集与WiFi传输
+     * @param jitterMillis  在固定延迟上叠加的随机延迟上限
+     * @param errorRate     按该比例返回500，模拟摄像头故障
+     */
+    public StubCameraServer(int port, int frameKb, int latencyMillis, int jitterMillis, double errorRate, int threads) throws IOException {
+        this.frameKb = frameKb;
+        this.frame = Frames.jpeg(frameKb * 1024);
+        this.latencyMillis = latencyMillis;
+        this.jitterMillis = jitterMillis;
+        this.errorRate = errorRate;
+        this.executor = Executors.newFixedThreadPool(threads);
+        this.server = HttpServer.create(new InetSocketAddress("localhost", port), 256);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+    }
+
+    public void start() {
+        server.start();
+        logger.info("模拟摄像头已启动: http://localhost:{}，帧大小 {}KB，延迟 {}±{}ms，错误率 {}",
+                port(), frame.length / 1024, latencyMillis, jitterMillis, errorRate);
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    public long captures() {
+        return captures.sum();
+    }
+
+    public long errors() {
+        return errors.sum();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            // 先读完请求体，否则连接无法复用
+            exchange.getRequestBody().transferTo(OutputStream.nullOutputStream());
+            String path = exchange.getRequestURI().getPath();
+            simulateLatency();
+            if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                errors.increment();
+                send(exchange, 500, "text/plain", "camera error".getBytes(StandardCharsets.UTF_8));
+            } else if (path.endsWith("/capture")) {
+                captures.increment();
+                send(exchange, 200, "image/jpeg", frame);
+            } else if (path.endsWith("/set-resolution")) {
+                setResolution(exchange.getRequestURI().getQuery());
+                send(exchange, 200, "text/plain", "OK".getBytes(StandardCharsets.UTF_8));
+            } else if (path.endsWith("/take-snapshot")) {
+                send(exchange, 200, "text/plain", "OK".getBytes(StandardCharsets.UTF_8));
+            } else {
+                send(exchange, 404, "text/plain", "not found".getBytes(StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    // 按分辨率相对于640x480的像素比例缩放帧大小
+    private void setResolution(String query) {
+        int width = 640;
+        int height = 480;
+        if (query != null) {
+            for (String pair : query.split("&")) {
+                String[] kv = pair.split("=", 2);
+                if (kv.length != 2) continue;
+                try {
+                    if ("width".equals(kv[0])) width = Integer.parseInt(kv[1]);
+                    if ("height".equals(kv[0])) height = Integer.parseInt(kv[1]);
+                } catch (NumberFormatException e) {
+                    logger.warn("忽略非法分辨率参数: {}", pair);
+                }
+            }
+        }
+        long bytes = (long) frameKb * 1024 * width * height / (640 * 480);
+        frame = Frames.jpeg((int) Math.max(4096, Math.min(bytes, 8L * 1024 * 1024)));
+        logger.info("分辨率调整为 {}x{}，帧大小 {}KB", width, height, frame.length / 1024);
+    }
+
+    private void simulateLatency() {
+        int delay = latencyMillis + (jitterMillis > 0 ? ThreadLocalRandom.current().nextInt(jitterMillis + 1) : 0);
+        if (delay <= 0) return;
+        try {
+            TimeUnit.MILLISECONDS.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    public static void main(String[] argv) throws Exception {
+        Args args = new Args(argv);
+        StubCameraServer server = new StubCameraServer(args.getInt("port", 8181), args.getInt("frame-kb", 100),
+                args.getInt("latency-ms", 50), args.getInt("jitter-ms", 20), args.getDouble("error-rate", 0),
+                args.getInt("threads", 16));
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        server.start();
+        Thread.currentThread().join();
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.spring.cache;
+
+import com.example.spring.mapper.UserMapper;
+import com.example.spring.pojo.User;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 账户缓存：按账户缓存登录所需的账户和密码（selectCredentials），容量和有效期有上限。
+ * 账户不存在的结果也会缓存（较短的有效期），避免注册检查、撞库请求反复查询数据库。
+ */
+@Component
+public class AccountCache {
+
+    @Autowired
+    private UserMapper userMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${account.cache.maximum-size:10000}")
+    private long maximumSize;
+
+    @Value("${account.cache.ttl-ms:600000}")
+    private long ttlMillis;
+
+    @Value("${account.cache.negative-ttl-ms:30000}")
+    private long negativeTtlMillis;
+
+    private LoadingCache<String, Optional<User>> cache;
+
+    @PostConstruct
+    public void init() {
+        long ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        long negativeTtlNanos = TimeUnit.MILLISECONDS.toNanos(negativeTtlMillis);
+        cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new Expiry<String, Optional<User>>() {
+                    @Override
+                    public long expireAfterCreate(String account, Optional<User> user, long currentTime) {
+                        return user.isPresent() ? ttlNanos : negativeTtlNanos;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String account, Optional<User> user, long currentTime, long currentDuration) {
+                        return expireAfterCreate(account, user, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String account, Optional<User> user, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build(account -> Optional.ofNullable(userMapper.selectCredentials(account)));
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "account");
+    }
+
+    // 查询账户（只包含account和password），不存在时返回null
+    public User get(String account) {
+        return cache.get(account).orElse(null);
+    }
+
+    // 只查看缓存，不访问数据库：已缓存时返回账户是否存在，未缓存时返回null
+    public Boolean cachedExists(String account) {
+        Optional<User> user = cache.getIfPresent(account);
+        return user == null ? null : user.isPresent();
+    }
+
+    // 账户数据变化后（注册、修改密码等）调用
+    public void invalidate(String account) {
+        cache.invalidate(account);
+    }
+
+    public Map<String, Object> stats() {
+        CacheStats stats = cache.stats();
+        Map<String, Object> result = new HashMap<>();
+        result.put("size", cache.estimatedSize());
+        result.put("hitCount", stats.hitCount());
+        result.put("missCount", stats.missCount());
+        result.put("hitRate", stats.hitRate());
+        result.put("evictionCount", stats.evictionCount());
+        result.put("averageLoadMillis", stats.averageLoadPenalty() / 1e6);
+        return result;
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.spring.cache;
+
+import com.example.spring.security.TokenRevocationList;
+import com.example.spring.util.JwtUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 已验证token缓存：解析器只创建一次；验证通过的token缓存其claims，缓存有效期不超过token的exp，
+ * 过期的token不会从缓存中返回。验证失败的token不缓存；已注销的token即使在缓存中也会被拒绝。
+ */
+@Component
+public class TokenCache {
+
+    @Autowired
+    private TokenRevocationList revocationList;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${jwt.secret}")
+    private String secret;
+
+    @Value("${token.cache.maximum-size:10000}")
+    private long maximumSize;
+
+    @Value("${token.cache.max-ttl-ms:600000}")
+    private long maxTtlMillis;
+
+    private JwtParser parser;
+    private Cache<String, Claims> cache;
+    private Timer verifyTimer;
+    private final LongAdder verifications = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder verifyNanos = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        parser = JwtUtil.newParser(secret);
+        long maxTtlNanos = TimeUnit.MILLISECONDS.toNanos(maxTtlMillis);
+        cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new Expiry<String, Claims>() {
+                    @Override
+                    public long expireAfterCreate(String token, Claims claims, long currentTime) {
+                        if (claims.getExpiration() == null) {
+                            return maxTtlNanos;
+                        }
+                        long remaining = claims.getExpiration().getTime() - System.currentTimeMillis();
+                        return Math.max(0, Math.min(maxTtlNanos, TimeUnit.MILLISECONDS.toNanos(remaining)));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String token, Claims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String token, Claims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "token");
+        verifyTimer = Timer.builder("user.token.verify")
+                .description("token验证耗时（含缓存命中）")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(1_000))
+                .maximumExpectedValue(Duration.ofSeconds(1))
+                .register(meterRegistry);
+    }
+
+    /**
+     * 返回token的claims；未命中时验证签名和有效期，token无效时抛出JwtException
+     */
+    public Claims verify(String token) {
+        long start = System.nanoTime();
+        try {
+            Claims claims = cache.get(token, this::parse);
+            if (revocationList.isRevoked(tokenId(token, claims))) {
+                throw new JwtException("token已注销");
+            }
+            return claims;
+        } finally {
+            verifyTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * 注销token：加入注销列表直到其过期，并移出缓存；token无效时忽略
+     */
+    public void revoke(String token) {
+        Claims claims;
+        try {
+            claims = verify(token);
+        } catch (JwtException e) {
+            return;
+        }
+        long expiresAt = claims.getExpiration() != null
+                ? claims.getExpiration().getTime()
+                : System.currentTimeMillis() + maxTtlMillis;
+        revocationList.revoke(tokenId(token, claims), expiresAt);
+        cache.invalidate(token);
+    }
+
+    // 旧token没有jti，直接用token本身作为注销key
+    private static String tokenId(String token, Claims claims) {
+        String id = claims.getId();
+        return id != null ? id : token;
+    }
+
+    private Claims parse(String token) {
+        long start = System.nanoTime();
+        try {
+            return parser.parseClaimsJws(token).getBody();
+        } catch (RuntimeException e) {
+            failures.increment();
+            throw e;
+        } finally {
+            verifications.increment();
+            verifyNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    public Map<String, Object> stats() {
+        CacheStats stats = cache.stats();
+        long count = verifications.sum();
+        Map<String, Object> result = new HashMap<>();
+        result.put("size", cache.estimatedSize());
+        result.put("hitCount", stats.hitCount());
+        result.put("missCount", stats.missCount());
+        result.put("hitRate", stats.hitRate());
+        result.put("verifications", count);
+        result.put("failures", failures.sum());
+        result.put("averageVerifyMillis", count == 0 ? 0 : verifyNanos.sum() / 1e6 / count);
+        return result;
+    }
+}
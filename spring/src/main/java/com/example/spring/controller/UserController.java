@@ -1,15 +1,36 @@
 package com.example.spring.controller;
 
+import com.example.spring.cache.AccountCache;
+import com.example.spring.cache.TokenCache;
+import com.example.spring.exception.DuplicateAccountException;
+import com.example.spring.exception.HashingBusyException;
+import com.example.spring.pojo.ImportResult;
 import com.example.spring.pojo.User;
+import com.example.spring.security.LoginRateLimiter;
+import com.example.spring.security.PasswordHasher;
+import com.example.spring.security.TokenRevocationList;
 import com.example.spring.service.UserService;
-import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.SignatureAlgorithm;
+import com.example.spring.service.impl.LoginMetadataWriter;
+import com.example.spring.util.JwtUtil;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.Date;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -19,6 +40,28 @@ public class UserController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private AccountCache accountCache;
+
+    @Autowired
+    private TokenCache tokenCache;
+
+    @Autowired
+    private PasswordHasher passwordHasher;
+
+    @Autowired
+    private LoginRateLimiter loginRateLimiter;
+
+    @Autowired
+    private TokenRevocationList tokenRevocationList;
+
+    @Autowired
+    private LoginMetadataWriter loginMetadataWriter;
+
+    // 部署在反向代理之后时开启，使用X-Forwarded-For中的第一个地址作为客户端IP
+    @Value("${login.rate-limit.trust-forwarded-for:false}")
+    private boolean trustForwardedFor;
+
     @Value("${jwt.secret}")
     private String secret;
 
@@ -27,7 +70,8 @@ public class UserController {
 
     @CrossOrigin(value = "http://localhost:9527")
     @PostMapping("/login")
-    public Map<String, Object> login(@RequestBody User user) {
+    public Map<String, Object> login(@RequestBody User user, HttpServletRequest request,
+                                     HttpServletResponse response) {
         Map<String, Object> result = new HashMap<>();
         // 将username改为account
         String account = user.getAccount();
@@ -39,12 +83,34 @@ public class UserController {
             return result;
         }
 
+        // 先限流再查库和计算哈希，撞库请求不会打到数据库
+        long retryAfterMillis = loginRateLimiter.tryAcquire(account, clientIp(request));
+        if (retryAfterMillis > 0) {
+            long retryAfterSeconds = (retryAfterMillis + 999) / 1000;
+            response.setHeader("Retry-After", String.valueOf(retryAfterSeconds));
+            result.put("success", false);
+            result.put("message", "尝试次数过多，请稍后再试");
+            result.put("code", 42900);
+            result.put("retryAfter", retryAfterSeconds);
+            return result;
+        }
+
         // 调用login方法时使用account参数
-        boolean success = userService.login(account, password);
+        boolean success;
+        try {
+            success = userService.login(account, password);
+        } catch (HashingBusyException e) {
+            result.put("success", false);
+            result.put("message", e.getMessage());
+            result.put("code", 50300);
+            return result;
+        }
 
         if (success) {
             // 生成token时使用account
-            String token = generateToken(account);
+            String token = JwtUtil.generateToken(account, secret, expiration);
+            // 登录时间、IP和token延迟批量写入数据库
+            loginMetadataWriter.record(account, clientIp(request), token);
             result.put("success", true);
             result.put("message", "登录成功");
             result.put("code", 20000);
@@ -64,12 +130,8 @@ public class UserController {
         Map<String, Object> result = new HashMap<>();
 
         try {
-            // 从token中解析出account
-            String account = Jwts.parser()
-                    .setSigningKey(secret)
-                    .parseClaimsJws(token)
-                    .getBody()
-                    .getSubject();
+            // 从token中解析出account，验证结果在token有效期内缓存
+            String account = tokenCache.verify(token).getSubject();
 
             // 根据account判断角色
             String[] roles = "admin".equals(account) ? new String[]{"admin"} : new String[]{"editor"};
@@ -93,7 +155,11 @@ public class UserController {
 
     @CrossOrigin(value = "http://localhost:9527")
     @PostMapping("/logout")
-    public Map<String, Object> logout() {
+    public Map<String, Object> logout(@RequestHeader(value = "X-Token", required = false) String token) {
+        // 注销后token在过期前都会被 /user/info 拒绝
+        if (token != null) {
+            tokenCache.revoke(token);
+        }
         Map<String, Object> result = new HashMap<>();
         result.put("success", true);
         result.put("code", 20000);
@@ -115,14 +181,20 @@ public class UserController {
             return result;
         }
 
-        // 检查账户是否存在，使用existsAccount方法
-        if (userService.existsAccount(account)) {
+        // 不再预先查询，账户是否存在由插入时的唯一约束判断
+        boolean success;
+        try {
+            success = userService.register(user);
+        } catch (DuplicateAccountException e) {
             result.put("success", false);
             result.put("message", "账户已被注册");
             return result;
+        } catch (HashingBusyException e) {
+            result.put("success", false);
+            result.put("message", e.getMessage());
+            result.put("code", 50300);
+            return result;
         }
-
-        boolean success = userService.register(user);
         if (success) {
             result.put("success", true);
             result.put("code", 20000);
@@ -135,15 +207,128 @@ public class UserController {
         return result;
     }
 
-    private String generateToken(String account) {
-        Map<String, Object> claims = new HashMap<>();
-        claims.put("sub", account);
-        claims.put("iat", new Date());
+    /**
+     * 批量导入用户（仅admin）：上传CSV文件，每行 account,password,name,gender,email,phone,birthday，
+     * 含逗号、双引号或换行的字段用双引号包围（RFC 4180）；文件流式读取，不会整体载入内存。
+     * 账户已存在的行跳过，字段超长或格式错误的行计为invalid
+     */
+    @PostMapping("/import")
+    public Map<String, Object> importUsers(@RequestHeader("X-Token") String token,
+                                           @RequestParam("file") MultipartFile file) {
+        Map<String, Object> result = new HashMap<>();
+        if (!checkAdmin(token, result)) {
+            return result;
+        }
+
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8))) {
+            ImportResult importResult = userService.importUsers(reader);
+            result.put("success", true);
+            result.put("code", 20000);
+            result.put("data", importResult);
+        } catch (IOException e) {
+            result.put("success", false);
+            result.put("message", "读取文件失败");
+            result.put("code", 50000);
+        } catch (DataAccessException e) {
+            // 已提交的批次保留，失败批次回滚
+            result.put("success", false);
+            result.put("message", "导入失败: " + e.getMostSpecificCause().getMessage());
+            result.put("code", 50000);
+        }
+        return result;
+    }
+
+    /**
+     * 用户列表（仅admin）：按accountId做keyset分页，下一页传入上一页返回的nextAfterId，不使用OFFSET
+     */
+    @GetMapping("/list")
+    public Map<String, Object> listUsers(@RequestHeader("X-Token") String token,
+                                         @RequestParam(value = "afterId", defaultValue = "0") long afterId,
+                                         @RequestParam(value = "keyword", required = false) String keyword,
+                                         @RequestParam(value = "size", defaultValue = "20") int size) {
+        Map<String, Object> result = new HashMap<>();
+        if (!checkAdmin(token, result)) {
+            return result;
+        }
+
+        List<User> users = userService.listUsers(afterId, keyword, Math.max(1, Math.min(size, 200)));
+        Map<String, Object> data = new HashMap<>();
+        data.put("items", users);
+        data.put("nextAfterId", users.isEmpty() ? null : users.get(users.size() - 1).getAccountId());
+        result.put("success", true);
+        result.put("code", 20000);
+        result.put("data", data);
+        return result;
+    }
+
+    /**
+     * 导出全部用户为CSV（仅admin）：边从数据库读取边写入响应，不在内存中保存结果集
+     */
+    @GetMapping("/export")
+    public ResponseEntity<?> exportUsers(@RequestHeader("X-Token") String token) {
+        Map<String, Object> result = new HashMap<>();
+        if (!checkAdmin(token, result)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(result);
+        }
 
-        return Jwts.builder()
-                .setClaims(claims)
-                .setExpiration(new Date(System.currentTimeMillis() + expiration))
-                .signWith(SignatureAlgorithm.HS512, secret)
-                .compact();
+        StreamingResponseBody body = out -> userService.exportCsv(out);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=users.csv")
+                .contentType(new MediaType("text", "csv", StandardCharsets.UTF_8))
+                .body(body);
+    }
+
+    // 账户缓存与token缓存的命中率、token验证耗时、密码哈希排队和计算耗时、登录限流、token注销、登录信息写入（仅admin）
+    @GetMapping("/cache/stats")
+    public Map<String, Object> cacheStats(@RequestHeader("X-Token") String token) {
+        Map<String, Object> result = new HashMap<>();
+        if (!checkAdmin(token, result)) {
+            return result;
+        }
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("account", accountCache.stats());
+        data.put("token", tokenCache.stats());
+        data.put("passwordHash", passwordHasher.stats());
+        data.put("loginRateLimit", loginRateLimiter.stats());
+        data.put("revocation", tokenRevocationList.stats());
+        data.put("loginMetadata", loginMetadataWriter.stats());
+
+        result.put("success", true);
+        result.put("code", 20000);
+        result.put("data", data);
+        return result;
+    }
+
+    private String clientIp(HttpServletRequest request) {
+        if (trustForwardedFor) {
+            String forwarded = request.getHeader("X-Forwarded-For");
+            if (forwarded != null && !forwarded.isBlank()) {
+                int comma = forwarded.indexOf(',');
+                return (comma >= 0 ? forwarded.substring(0, comma) : forwarded).trim();
+            }
+        }
+        return request.getRemoteAddr();
+    }
+
+    // 校验token属于admin，不通过时把错误信息写入result
+    private boolean checkAdmin(String token, Map<String, Object> result) {
+        String account;
+        try {
+            account = tokenCache.verify(token).getSubject();
+        } catch (Exception e) {
+            result.put("success", false);
+            result.put("message", "Token无效或已过期");
+            result.put("code", 50008);
+            return false;
+        }
+        if (!"admin".equals(account)) {
+            result.put("success", false);
+            result.put("message", "无权限");
+            result.put("code", 40300);
+            return false;
+        }
+        return true;
     }
 }
@@ -0,0 +1,9 @@
+package com.example.spring.exception;
+
+// 注册时账户已存在（由数据库唯一约束判定）
+public class DuplicateAccountException extends RuntimeException {
+
+    public DuplicateAccountException(String account, Throwable cause) {
+        super("账户已被注册: " + account, cause);
+    }
+}
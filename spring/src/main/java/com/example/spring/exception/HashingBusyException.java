@@ -0,0 +1,9 @@
+package com.example.spring.exception;
+
+// 密码哈希队列已满，登录/注册直接失败而不是排队等待
+public class HashingBusyException extends RuntimeException {
+
+    public HashingBusyException(String message) {
+        super(message);
+    }
+}
@@ -2,11 +2,36 @@ package com.example.spring.mapper;
 
 import com.example.spring.pojo.User;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.cursor.Cursor;
+
+import java.util.List;
 
 public interface UserMapper {
-    // 1. 根据账户查询用户（用于登录和检查账户是否存在）
+    // 1. 根据账户查询用户的全部字段
     User selectByAccount(@Param("account") String account);
 
+    // 1.1 登录校验只需要账户和密码，可直接由 (account, password) 索引返回
+    User selectCredentials(@Param("account") String account);
+
+    // 1.2 检查账户是否存在，存在时返回1，否则返回null
+    Integer existsByAccount(@Param("account") String account);
+
     // 2. 插入新用户（用于注册功能）
     int insert(User user);
+
+    // 3. 多行插入，只跳过账户已存在的行（用于批量导入），其他错误照常抛出，返回实际插入行数
+    int insertBatchSkipExisting(@Param("users") List<User> users);
+
+    // 4. 更新密码（登录时把旧的MD5摘要升级为BCrypt）
+    int updatePassword(@Param("account") String account, @Param("password") String password,
+                       @Param("modifyTime") Long modifyTime);
+
+    // 5. 更新登录信息（loginTime、loginIP、token），由LoginMetadataWriter批量调用
+    int updateLoginMetadata(User user);
+
+    // 6. 按accountId分页（keyset），返回accountId大于afterId的前limit条，不含密码和token；keyword按账户或姓名前缀匹配，其中的%和_按字面匹配
+    List<User> selectPage(@Param("afterId") long afterId, @Param("keyword") String keyword, @Param("limit") int limit);
+
+    // 7. 流式读取全部用户（用于导出），不含密码和token；必须在同一个SqlSession内遍历并关闭
+    Cursor<User> scanAll();
 }
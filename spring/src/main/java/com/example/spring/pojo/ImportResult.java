@@ -0,0 +1,7 @@
+package com.example.spring.pojo;
+
+/**
+ * 批量导入结果：imported 为实际插入行数，duplicated 为因账户已存在被忽略的行数，invalid 为校验不通过的行数（缺少账户或密码、字段超长、格式错误、引号不匹配）
+ */
+public record ImportResult(long total, long imported, long duplicated, long invalid, long elapsedMillis) {
+}
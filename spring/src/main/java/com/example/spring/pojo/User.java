@@ -5,7 +5,7 @@ import java.io.Serializable;
 public class User implements Serializable {
     private Long accountId;     // 用户ID，12位以内
     private String account;     // 用户账户，16字符以内
-    private String password;    // 用户密码，16字符以内（MD5加密）
+    private String password;    // 用户密码，BCrypt哈希（旧数据为MD5摘要，登录时升级）
     private String name;        // 用户姓名
     private String gender;      // 性别：1-男，0-女
     private String email;       // 新增：用户邮箱
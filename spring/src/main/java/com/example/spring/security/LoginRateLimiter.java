@@ -0,0 +1,105 @@
+package com.example.spring.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 登录限流：按账户和客户端IP分别限流。每个key只保存一个AtomicLong（GCRA算法，等价于令牌桶：
+ * 记录"理论上下一个请求的到达时间"），用CAS更新，无锁。
+ * 桶保存在有容量上限的Caffeine缓存中，空闲超过桶完全恢复所需时间后自动淘汰，key再多内存也不会无限增长。
+ */
+@Component
+public class LoginRateLimiter {
+
+    @Value("${login.rate-limit.account.capacity:5}")
+    private int accountCapacity;
+
+    @Value("${login.rate-limit.account.per-minute:5}")
+    private int accountPerMinute;
+
+    @Value("${login.rate-limit.ip.capacity:20}")
+    private int ipCapacity;
+
+    @Value("${login.rate-limit.ip.per-minute:30}")
+    private int ipPerMinute;
+
+    @Value("${login.rate-limit.max-keys:200000}")
+    private long maxKeys;
+
+    private Limiter accountLimiter;
+    private Limiter ipLimiter;
+    private final LongAdder allowed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        accountLimiter = new Limiter(accountCapacity, accountPerMinute, maxKeys);
+        ipLimiter = new Limiter(ipCapacity, ipPerMinute, maxKeys);
+    }
+
+    /**
+     * 尝试获取一次登录机会，允许时返回0，否则返回建议的重试等待毫秒数
+     */
+    public long tryAcquire(String account, String clientIp) {
+        long now = System.nanoTime();
+        long waitNanos = ipLimiter.tryAcquire(clientIp, now);
+        if (waitNanos == 0 && account != null) {
+            waitNanos = accountLimiter.tryAcquire(account, now);
+        }
+        if (waitNanos == 0) {
+            allowed.increment();
+            return 0;
+        }
+        rejected.increment();
+        return Math.max(1, TimeUnit.NANOSECONDS.toMillis(waitNanos));
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("allowed", allowed.sum());
+        result.put("rejected", rejected.sum());
+        result.put("accountKeys", accountLimiter.buckets.estimatedSize());
+        result.put("ipKeys", ipLimiter.buckets.estimatedSize());
+        return result;
+    }
+
+    private static final class Limiter {
+        private final long intervalNanos;
+        private final long burstNanos;
+        private final Cache<String, AtomicLong> buckets;
+
+        private Limiter(int capacity, int perMinute, long maxKeys) {
+            this.intervalNanos = TimeUnit.MINUTES.toNanos(1) / Math.max(1, perMinute);
+            this.burstNanos = intervalNanos * (Math.max(1, capacity) - 1);
+            // 空闲这么久之后桶已经完全恢复，淘汰不会放过任何本应被拒绝的请求
+            this.buckets = Caffeine.newBuilder()
+                    .maximumSize(maxKeys)
+                    .expireAfterAccess(burstNanos + intervalNanos, TimeUnit.NANOSECONDS)
+                    .build();
+        }
+
+        private long tryAcquire(String key, long now) {
+            AtomicLong state = buckets.get(key, k -> new AtomicLong(now));
+            while (true) {
+                long tat = state.get();
+                long start = Math.max(tat, now);
+                long wait = start - now - burstNanos;
+                if (wait > 0) {
+                    return wait;
+                }
+                if (state.compareAndSet(tat, start + intervalNanos)) {
+                    return 0;
+                }
+            }
+        }
+    }
+}
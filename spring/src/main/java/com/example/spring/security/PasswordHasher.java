@@ -0,0 +1,219 @@
+package com.example.spring.security;
+
+import com.example.spring.exception.HashingBusyException;
+import com.example.spring.util.MD5Util;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 密码哈希：BCrypt计算放在独立的有界线程池中执行，避免大量登录占满Tomcat线程和CPU；
+ * 队列满时直接抛出 HashingBusyException。批量导入使用另一个线程池，不与登录竞争。
+ * 兼容旧的MD5摘要，登录成功后可按 {@link #needsRehash} 升级。
+ */
+@Component
+public class PasswordHasher {
+
+    private static final Logger logger = LoggerFactory.getLogger(PasswordHasher.class);
+
+    @Value("${password.hash.cost:10}")
+    private int cost;
+
+    @Value("${password.hash.threads:2}")
+    private int threads;
+
+    @Value("${password.hash.queue-capacity:32}")
+    private int queueCapacity;
+
+    @Value("${password.hash.timeout-ms:5000}")
+    private long timeoutMillis;
+
+    // 批量导入的哈希线程数，与登录线程池相互独立
+    @Value("${password.hash.import-threads:2}")
+    private int importThreads;
+
+    private BCryptPasswordEncoder encoder;
+    // 账户不存在时用于比对的固定哈希，与真实哈希成本相同
+    private String dummyHash;
+    private ThreadPoolExecutor executor;
+    private ThreadPoolExecutor importExecutor;
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAdder hashNanos = new LongAdder();
+
+    @PostConstruct
+    public void start() {
+        encoder = new BCryptPasswordEncoder(cost);
+        dummyHash = encoder.encode("dummy-password");
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), threadFactory("password-hasher-"), new ThreadPoolExecutor.AbortPolicy());
+        // 队列满时由导入线程自己计算，多个导入同时进行时自然降速，不会无限排队
+        importExecutor = new ThreadPoolExecutor(importThreads, importThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(importThreads), threadFactory("password-import-"), new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+        importExecutor.shutdownNow();
+    }
+
+    public String hash(String rawPassword) {
+        return submit(() -> encoder.encode(rawPassword));
+    }
+
+    /**
+     * 批量导入使用：把一组密码按导入线程数切成几段，每段一个任务在导入线程池中并行哈希，全部完成后按原顺序返回
+     */
+    public List<String> hashAll(List<String> rawPasswords) {
+        int size = rawPasswords.size();
+        int parts = Math.min(importThreads, size);
+        String[] hashed = new String[size];
+        List<Future<?>> futures = new ArrayList<>(parts);
+        for (int part = 0; part < parts; part++) {
+            int from = size * part / parts;
+            int to = size * (part + 1) / parts;
+            futures.add(importExecutor.submit(() -> {
+                for (int i = from; i < to; i++) {
+                    hashed[i] = encoder.encode(rawPasswords.get(i));
+                }
+            }));
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new HashingBusyException("请求被中断");
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            throw new IllegalStateException("密码哈希失败", e.getCause());
+        }
+        return Arrays.asList(hashed);
+    }
+
+    public boolean matches(String rawPassword, String storedPassword) {
+        if (storedPassword == null) {
+            return false;
+        }
+        if (!isBcrypt(storedPassword)) {
+            // 旧数据为MD5摘要，计算成本很低，不需要进入线程池
+            return MD5Util.encrypt(rawPassword).equals(storedPassword);
+        }
+        return submit(() -> encoder.matches(rawPassword, storedPassword));
+    }
+
+    /**
+     * 账户不存在时执行一次同样成本的比对，使响应时间与密码错误时一致，无法据此判断账户是否存在
+     */
+    public void matchesDummy(String rawPassword) {
+        submit(() -> encoder.matches(rawPassword, dummyHash));
+    }
+
+    // 旧的MD5摘要，或BCrypt成本低于当前配置时需要重新哈希
+    public boolean needsRehash(String storedPassword) {
+        return !isBcrypt(storedPassword) || encoder.upgradeEncoding(storedPassword);
+    }
+
+    /**
+     * 后台重新哈希，不等待结果；队列满时放弃，下次登录再升级
+     */
+    public void rehashAsync(String rawPassword, Consumer<String> onHashed) {
+        long enqueuedAt = System.nanoTime();
+        try {
+            executor.execute(() -> {
+                try {
+                    onHashed.accept(timed(enqueuedAt, () -> encoder.encode(rawPassword)));
+                } catch (Exception e) {
+                    logger.warn("密码重新哈希失败: {}", e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+        }
+    }
+
+    public Map<String, Object> stats() {
+        long count = completed.sum();
+        Map<String, Object> result = new HashMap<>();
+        result.put("cost", cost);
+        result.put("queueDepth", executor.getQueue().size());
+        result.put("importActive", importExecutor.getActiveCount());
+        result.put("completed", count);
+        result.put("rejected", rejected.sum());
+        result.put("averageWaitMillis", count == 0 ? 0 : waitNanos.sum() / 1e6 / count);
+        result.put("averageHashMillis", count == 0 ? 0 : hashNanos.sum() / 1e6 / count);
+        return result;
+    }
+
+    private <T> T submit(Callable<T> task) {
+        long enqueuedAt = System.nanoTime();
+        Future<T> future;
+        try {
+            future = executor.submit(() -> timed(enqueuedAt, task));
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new HashingBusyException("系统繁忙，请稍后重试");
+        }
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new HashingBusyException("系统繁忙，请稍后重试");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HashingBusyException("请求被中断");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("密码哈希失败", e.getCause());
+        }
+    }
+
+    private <T> T timed(long enqueuedAt, Callable<T> task) throws Exception {
+        long start = System.nanoTime();
+        waitNanos.add(start - enqueuedAt);
+        try {
+            return task.call();
+        } finally {
+            hashNanos.add(System.nanoTime() - start);
+            completed.increment();
+        }
+    }
+
+    private static ThreadFactory threadFactory(String prefix) {
+        AtomicInteger threadIndex = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + threadIndex.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static boolean isBcrypt(String storedPassword) {
+        return storedPassword.startsWith("$2a$") || storedPassword.startsWith("$2b$") || storedPassword.startsWith("$2y$");
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.spring.security;
+
+import com.example.spring.util.BloomFilter;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 已注销token列表：key为token的jti，值为token的过期时间，过期后自动清理。
+ * 绝大多数token未被注销，检查时先查布隆过滤器，只有可能命中时才查集合；
+ * 布隆过滤器不能删除，定期清理过期条目后按剩余条目重建。
+ */
+@Component
+public class TokenRevocationList {
+
+    @Value("${token.revocation.expected-entries:100000}")
+    private long expectedEntries;
+
+    @Value("${token.revocation.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+
+    private final Map<String, Long> revoked = new ConcurrentHashMap<>();
+    private volatile BloomFilter filter;
+    private final LongAdder checks = new LongAdder();
+    private final LongAdder filterPasses = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        filter = new BloomFilter(expectedEntries, falsePositiveRate);
+    }
+
+    // 注销与重建互斥，保证重建期间注销的条目不会丢失；注销很少发生，检查路径不加锁
+    public synchronized void revoke(String tokenId, long expiresAtMillis) {
+        if (expiresAtMillis <= System.currentTimeMillis()) {
+            return;
+        }
+        revoked.put(tokenId, expiresAtMillis);
+        filter.put(tokenId);
+    }
+
+    public boolean isRevoked(String tokenId) {
+        checks.increment();
+        if (!filter.mightContain(tokenId)) {
+            return false;
+        }
+        filterPasses.increment();
+        Long expiresAt = revoked.get(tokenId);
+        return expiresAt != null && expiresAt > System.currentTimeMillis();
+    }
+
+    @Scheduled(fixedDelayString = "${token.revocation.rebuild-interval-ms:600000}")
+    public synchronized void purgeExpired() {
+        long now = System.currentTimeMillis();
+        revoked.values().removeIf(expiresAt -> expiresAt <= now);
+        BloomFilter rebuilt = new BloomFilter(Math.max(expectedEntries, revoked.size() * 2L), falsePositiveRate);
+        for (String tokenId : revoked.keySet()) {
+            rebuilt.put(tokenId);
+        }
+        filter = rebuilt;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("revoked", revoked.size());
+        result.put("checks", checks.sum());
+        result.put("filterPasses", filterPasses.sum());
+        return result;
+    }
+}
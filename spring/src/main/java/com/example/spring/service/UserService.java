@@ -1,7 +1,13 @@
 package com.example.spring.service;
 
+import com.example.spring.pojo.ImportResult;
 import com.example.spring.pojo.User;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.util.List;
+
 public interface UserService {
     boolean login(String username, String password);
 
@@ -10,4 +16,10 @@ public interface UserService {
     boolean existsAccount(String account);
 
     boolean register(User user);
+
+    ImportResult importUsers(Reader reader) throws IOException;
+
+    List<User> listUsers(long afterId, String keyword, int size);
+
+    long exportCsv(OutputStream out) throws IOException;
 }
\ No newline at end of file
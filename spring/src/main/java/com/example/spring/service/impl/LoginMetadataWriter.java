@@ -0,0 +1,135 @@
+package com.example.spring.service.impl;
+
+import com.example.spring.mapper.UserMapper;
+import com.example.spring.pojo.User;
+import jakarta.annotation.PreDestroy;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 登录信息（loginTime、loginIP、token）延迟批量写入：登录时只记录到内存，同一账户多次登录只保留最后一次，
+ * 定时通过BATCH执行器批量UPDATE。待写入条目数有上限，超出时丢弃并计数；应用关闭时最后写入一次。
+ */
+@Component
+public class LoginMetadataWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoginMetadataWriter.class);
+
+    private record LoginEvent(User user, long recordedAt) {
+    }
+
+    @Autowired
+    private SqlSessionFactory sqlSessionFactory;
+
+    @Value("${login.metadata.max-pending:50000}")
+    private int maxPending;
+
+    private final Map<String, LoginEvent> pending = new ConcurrentHashMap<>();
+    private final LongAdder recorded = new LongAdder();
+    private final LongAdder merged = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final AtomicLong lastFlushSize = new AtomicLong();
+    private final AtomicLong lastFlushMillis = new AtomicLong();
+    private final AtomicLong maxLagMillis = new AtomicLong();
+
+    public void record(String account, String loginIP, String token) {
+        User user = new User();
+        user.setAccount(account);
+        user.setLoginIP(loginIP);
+        user.setToken(token);
+        user.setLoginTime(System.currentTimeMillis());
+
+        if (pending.size() >= maxPending && !pending.containsKey(account)) {
+            dropped.increment();
+            return;
+        }
+        if (pending.put(account, new LoginEvent(user, System.currentTimeMillis())) != null) {
+            merged.increment();
+        }
+        recorded.increment();
+    }
+
+    @Scheduled(fixedDelayString = "${login.metadata.flush-interval-ms:5000}")
+    public synchronized void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<LoginEvent> events = new ArrayList<>(pending.size());
+        for (String account : pending.keySet()) {
+            LoginEvent event = pending.remove(account);
+            if (event != null) {
+                events.add(event);
+            }
+        }
+        if (events.isEmpty()) {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        try (SqlSession session = sqlSessionFactory.openSession(ExecutorType.BATCH, false)) {
+            UserMapper batchMapper = session.getMapper(UserMapper.class);
+            for (LoginEvent event : events) {
+                batchMapper.updateLoginMetadata(event.user());
+            }
+            session.flushStatements();
+            session.commit();
+        } catch (RuntimeException e) {
+            failed.add(events.size());
+            logger.error("写入登录信息失败，{} 条重新排队", events.size(), e);
+            // 期间同一账户有新的登录时保留新的
+            for (LoginEvent event : events) {
+                pending.putIfAbsent(event.user().getAccount(), event);
+            }
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        long oldest = now;
+        for (LoginEvent event : events) {
+            oldest = Math.min(oldest, event.recordedAt());
+        }
+        written.add(events.size());
+        flushes.increment();
+        lastFlushSize.set(events.size());
+        lastFlushMillis.set(now - start);
+        maxLagMillis.accumulateAndGet(now - oldest, Math::max);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("pending", pending.size());
+        result.put("recorded", recorded.sum());
+        result.put("merged", merged.sum());
+        result.put("dropped", dropped.sum());
+        result.put("written", written.sum());
+        result.put("failed", failed.sum());
+        result.put("flushes", flushes.sum());
+        result.put("lastFlushSize", lastFlushSize.get());
+        result.put("lastFlushMillis", lastFlushMillis.get());
+        result.put("maxLagMillis", maxLagMillis.get());
+        return result;
+    }
+}
@@ -1,27 +1,122 @@
 package com.example.spring.service.impl;
 
+import com.example.spring.cache.AccountCache;
+import com.example.spring.exception.DuplicateAccountException;
 import com.example.spring.mapper.UserMapper;
+import com.example.spring.pojo.ImportResult;
 import com.example.spring.pojo.User;
+import com.example.spring.security.PasswordHasher;
 import com.example.spring.service.UserService;
-import com.example.spring.util.MD5Util;
+import com.example.spring.util.CsvReader;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
 @Service
 public class UserServiceImpl implements UserService {
 
+    // 导入时的字段校验，长度与f_users列宽一致；不合格的行整体判为无效，不会被截断后写入
+    private static final int NAME_MAX_LENGTH = 64;
+    private static final int EMAIL_MAX_LENGTH = 128;
+    private static final Pattern ACCOUNT_PATTERN = Pattern.compile("[^\\s\\p{Cntrl}]{1,16}");
+    private static final Pattern GENDER_PATTERN = Pattern.compile("[^\\s\\p{Cntrl}]");
+    private static final Pattern EMAIL_PATTERN = Pattern.compile("[^@\\s]+@[^@\\s]+");
+    private static final Pattern PHONE_PATTERN = Pattern.compile("[0-9+\\- ()]{1,32}");
+    // 单条CSV记录（含引号内换行）的最大字符数
+    private static final int MAX_RECORD_CHARS = 4096;
+
     @Autowired
     private UserMapper userMapper;
 
+    @Autowired
+    private AccountCache accountCache;
+
+    @Autowired
+    private SqlSessionFactory sqlSessionFactory;
+
+    @Autowired
+    private PasswordHasher passwordHasher;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // 每条INSERT语句包含的行数
+    @Value("${user.import.rows-per-insert:500}")
+    private int rowsPerInsert;
+
+    // 每执行多少条INSERT提交一次事务
+    @Value("${user.import.inserts-per-commit:20}")
+    private int insertsPerCommit;
+
+    // 登录、注册按结果各分两个计时器，启动时创建，请求中不再查找或创建
+    private Timer loginSuccessTimer;
+    private Timer loginFailureTimer;
+    private Timer registerSuccessTimer;
+    private Timer registerFailureTimer;
+
+    @PostConstruct
+    public void init() {
+        loginSuccessTimer = latencyTimer("user.login", "success");
+        loginFailureTimer = latencyTimer("user.login", "failure");
+        registerSuccessTimer = latencyTimer("user.register", "success");
+        registerFailureTimer = latencyTimer("user.register", "failure");
+    }
 
     @Override
     public boolean login(String account, String password) {
-        User user = userMapper.selectByAccount(account);
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            success = checkLogin(account, password);
+            return success;
+        } finally {
+            (success ? loginSuccessTimer : loginFailureTimer).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private boolean checkLogin(String account, String password) {
+        User user = accountCache.get(account);
         if (user == null) {
+            // 不存在（包括缓存的不存在结果）时也计算一次BCrypt，避免通过响应时间枚举账户
+            passwordHasher.matchesDummy(password);
+            return false;
+        }
+        if (!passwordHasher.matches(password, user.getPassword())) {
             return false;
         }
-        String encryptedPassword = MD5Util.encrypt(password);
-        return encryptedPassword.equals(user.getPassword());
+        // 旧的MD5摘要或低成本哈希在后台升级，不影响本次登录耗时
+        if (passwordHasher.needsRehash(user.getPassword())) {
+            passwordHasher.rehashAsync(password, hashed -> {
+                userMapper.updatePassword(account, hashed, System.currentTimeMillis());
+                accountCache.invalidate(account);
+            });
+        }
+        return true;
     }
 
     @Override
@@ -31,24 +126,227 @@ public class UserServiceImpl implements UserService {
 
     @Override
     public boolean existsAccount(String account) {
-        User user = userMapper.selectByAccount(account);
-        return user != null;
+        Boolean cached = accountCache.cachedExists(account);
+        if (cached != null) {
+            return cached;
+        }
+        return userMapper.existsByAccount(account) != null;
     }
 
+    /**
+     * 直接插入，由account唯一约束判断重复，只需一次数据库往返，并发注册同一账户时只有一个会成功
+     */
     @Override
     public boolean register(User user) {
-        if (existsAccount(user.getAccount())) {
-            throw new RuntimeException("账户已被注册");
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            success = insertUser(user);
+            return success;
+        } finally {
+            (success ? registerSuccessTimer : registerFailureTimer).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
         }
+    }
 
-        String encryptedPassword = MD5Util.encrypt(user.getPassword());
+    private boolean insertUser(User user) {
+        String encryptedPassword = passwordHasher.hash(user.getPassword());
         user.setPassword(encryptedPassword);
 
         long currentTime = System.currentTimeMillis();
         user.setCreateTime(currentTime);
         user.setModifyTime(currentTime);
 
-        int rows = userMapper.insert(user);
-        return rows > 0;
+        try {
+            int rows = userMapper.insert(user);
+            return rows > 0;
+        } catch (DuplicateKeyException e) {
+            throw new DuplicateAccountException(user.getAccount(), e);
+        } finally {
+            // 清除"账户不存在"的缓存结果
+            accountCache.invalidate(user.getAccount());
+        }
+    }
+
+    /**
+     * 逐条读取CSV（account,password,name,gender,email,phone,birthday，首行可为表头；字段可按RFC 4180用双引号包围），
+     * 校验通过的行按 rowsPerInsert 行拼成一条多行INSERT，通过BATCH执行器批量发送，每 insertsPerCommit 条提交一次；
+     * 每段的密码在独立的导入线程池中并行哈希，不占用登录使用的哈希线程池。
+     * 已存在的账户被跳过而不是中断导入；超长或格式错误的行计为invalid，不写入。
+     */
+    @Override
+    public ImportResult importUsers(Reader reader) throws IOException {
+        long start = System.currentTimeMillis();
+        long total = 0;
+        long invalid = 0;
+        long imported = 0;
+        CsvReader records = new CsvReader(reader instanceof BufferedReader buffered ? buffered : new BufferedReader(reader),
+                MAX_RECORD_CHARS);
+
+        try (SqlSession session = sqlSessionFactory.openSession(ExecutorType.BATCH, false)) {
+            UserMapper batchMapper = session.getMapper(UserMapper.class);
+            List<User> chunk = new ArrayList<>(rowsPerInsert);
+            List<String> pendingAccounts = new ArrayList<>();
+            int pendingInserts = 0;
+            String[] fields;
+            while ((fields = records.next()) != null) {
+                if ((fields.length == 1 && fields[0].isBlank()) || (total == 0 && "account".equals(field(fields, 0)))) {
+                    continue;
+                }
+                total++;
+                User user = parseCsvRecord(fields);
+                if (user == null) {
+                    invalid++;
+                    continue;
+                }
+                chunk.add(user);
+                pendingAccounts.add(user.getAccount());
+                if (chunk.size() == rowsPerInsert) {
+                    insertChunk(batchMapper, chunk);
+                    chunk = new ArrayList<>(rowsPerInsert);
+                    if (++pendingInserts == insertsPerCommit) {
+                        imported += commit(session, pendingAccounts);
+                        pendingInserts = 0;
+                    }
+                }
+            }
+            if (!chunk.isEmpty()) {
+                insertChunk(batchMapper, chunk);
+            }
+            imported += commit(session, pendingAccounts);
+        }
+        return new ImportResult(total, imported, total - invalid - imported, invalid,
+                System.currentTimeMillis() - start);
+    }
+
+    @Override
+    public List<User> listUsers(long afterId, String keyword, int size) {
+        return userMapper.selectPage(afterId, keyword, size);
+    }
+
+    /**
+     * 通过Cursor逐行读取并写出CSV，内存占用与用户数量无关；返回写出的行数
+     */
+    @Override
+    public long exportCsv(OutputStream out) throws IOException {
+        long rows = 0;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.write("accountId,account,name,gender,email,phone,birthday,loginTime,createTime,modifyTime,loginIP\n");
+        try (SqlSession session = sqlSessionFactory.openSession();
+             Cursor<User> cursor = session.getMapper(UserMapper.class).scanAll()) {
+            for (User user : cursor) {
+                writeCsvRow(writer, user.getAccountId(), user.getAccount(), user.getName(), user.getGender(),
+                        user.getEmail(), user.getPhone(), user.getBirthday(), user.getLoginTime(),
+                        user.getCreateTime(), user.getModifyTime(), user.getLoginIP());
+                rows++;
+            }
+        }
+        writer.flush();
+        return rows;
+    }
+
+    private static void writeCsvRow(Writer writer, Object... values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            if (values[i] == null) {
+                continue;
+            }
+            String value = values[i].toString();
+            if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+                writer.write('"');
+                writer.write(value.replace("\"", "\"\""));
+                writer.write('"');
+            } else {
+                writer.write(value);
+            }
+        }
+        writer.write('\n');
+    }
+
+    // 整段密码并行哈希后加入批量INSERT
+    private void insertChunk(UserMapper batchMapper, List<User> chunk) {
+        List<String> rawPasswords = new ArrayList<>(chunk.size());
+        for (User user : chunk) {
+            rawPasswords.add(user.getPassword());
+        }
+        List<String> hashed = passwordHasher.hashAll(rawPasswords);
+        for (int i = 0; i < chunk.size(); i++) {
+            chunk.get(i).setPassword(hashed.get(i));
+        }
+        batchMapper.insertBatchSkipExisting(chunk);
+    }
+
+    // 发送并提交已排队的INSERT，返回实际插入行数
+    private long commit(SqlSession session, List<String> accounts) {
+        long inserted = 0;
+        for (BatchResult result : session.flushStatements()) {
+            for (int count : result.getUpdateCounts()) {
+                inserted += Math.max(count, 0);
+            }
+        }
+        session.commit();
+        for (String account : accounts) {
+            accountCache.invalidate(account);
+        }
+        accounts.clear();
+        return inserted;
+    }
+
+    // 校验并转换一条CSV记录，不合格时返回null；密码保持明文，由 insertChunk 整段哈希
+    private User parseCsvRecord(String[] fields) {
+        String account = field(fields, 0);
+        String password = field(fields, 1);
+        String name = field(fields, 2);
+        String gender = field(fields, 3);
+        String email = field(fields, 4);
+        String phone = field(fields, 5);
+        String birthday = field(fields, 6);
+        if (account == null || password == null || fields.length > 7
+                || !ACCOUNT_PATTERN.matcher(account).matches()
+                || (name != null && name.codePointCount(0, name.length()) > NAME_MAX_LENGTH)
+                || (gender != null && !GENDER_PATTERN.matcher(gender).matches())
+                || (email != null && (email.length() > EMAIL_MAX_LENGTH || !EMAIL_PATTERN.matcher(email).matches()))
+                || (phone != null && !PHONE_PATTERN.matcher(phone).matches())
+                || (birthday != null && !isIsoDate(birthday))) {
+            return null;
+        }
+        User user = new User(account, password);
+        user.setName(name);
+        user.setGender(gender);
+        user.setEmail(email);
+        user.setPhone(phone);
+        user.setBirthday(birthday);
+        long currentTime = System.currentTimeMillis();
+        user.setCreateTime(currentTime);
+        user.setModifyTime(currentTime);
+        return user;
+    }
+
+    // 生日按 yyyy-MM-dd 保存（VARCHAR(10)）
+    private static boolean isIsoDate(String value) {
+        try {
+            LocalDate.parse(value);
+            return value.length() == 10;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    private static String field(String[] fields, int index) {
+        if (index >= fields.length) {
+            return null;
+        }
+        String value = fields[index].trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private Timer latencyTimer(String name, String result) {
+        return Timer.builder(name)
+                .tag("result", result)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofSeconds(10))
+                .register(meterRegistry);
     }
-}
\ No newline at end of file
+}
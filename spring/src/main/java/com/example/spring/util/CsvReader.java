@@ -0,0 +1,77 @@
+package com.example.spring.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 按RFC 4180逐条读取CSV记录：字段可用双引号包围，引号内可以包含逗号和换行，两个双引号表示一个双引号字符。
+ * 引号未闭合或单条记录超过maxChars个字符时返回空数组，调用方按格式错误的行处理
+ */
+public class CsvReader {
+
+    private static final String[] MALFORMED = new String[0];
+
+    private final BufferedReader reader;
+    private final int maxChars;
+
+    public CsvReader(BufferedReader reader, int maxChars) {
+        this.reader = reader;
+        this.maxChars = maxChars;
+    }
+
+    /**
+     * 读取下一条记录，文件结束时返回null
+     */
+    public String[] next() throws IOException {
+        String line = reader.readLine();
+        if (line == null) {
+            return null;
+        }
+        if (line.length() > maxChars) {
+            return MALFORMED;
+        }
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        int length = line.length();
+        int i = 0;
+        while (true) {
+            if (i == line.length()) {
+                if (!quoted) {
+                    break;
+                }
+                // 引号内的换行属于字段内容，继续读下一行
+                String next = reader.readLine();
+                if (next == null || (length += next.length() + 1) > maxChars) {
+                    return MALFORMED;
+                }
+                field.append('\n');
+                line = next;
+                i = 0;
+                continue;
+            }
+            char c = line.charAt(i++);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i < line.length() && line.charAt(i) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '"' && field.length() == 0) {
+                quoted = true;
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields.toArray(new String[0]);
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.spring.util;
+
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.io.Decoders;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+public class JwtUtil {
+
+    // 生成以account为subject的token，jti用于注销
+    public static String generateToken(String account, String secret, long expiration) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put("sub", account);
+        claims.put("jti", UUID.randomUUID().toString());
+        claims.put("iat", new Date());
+
+        return Jwts.builder()
+                .setClaims(claims)
+                .setExpiration(new Date(System.currentTimeMillis() + expiration))
+                .signWith(SignatureAlgorithm.HS512, secret)
+                .compact();
+    }
+
+    // 创建可复用的解析器（线程安全），secret与签发时一样按Base64解码
+    public static JwtParser newParser(String secret) {
+        return Jwts.parserBuilder()
+                .setSigningKey(Decoders.BASE64.decode(secret))
+                .build();
+    }
+
+    // 校验签名和有效期并返回account，token无效时抛出JwtException
+    public static String parseAccount(String token, String secret) {
+        return Jwts.parser()
+                .setSigningKey(secret)
+                .parseClaimsJws(token)
+                .getBody()
+                .getSubject();
+    }
+}
@@ -0,0 +1,2 @@
+-- 注册和批量导入依赖account唯一约束判断重复；已有重复账户时需先清理数据再执行
+CREATE UNIQUE INDEX uk_f_users_account ON f_users (account);
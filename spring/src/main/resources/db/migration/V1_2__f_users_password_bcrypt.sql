@@ -0,0 +1,2 @@
+-- BCrypt哈希为60字符，旧的MD5摘要为32字符，两者都要能保存
+ALTER TABLE f_users MODIFY password VARCHAR(64) NOT NULL;
@@ -0,0 +1,17 @@
+-- 用户表初始结构（已有数据库以此版本为基线，不会重复执行）
+CREATE TABLE IF NOT EXISTS f_users (
+    accountId  BIGINT       NOT NULL AUTO_INCREMENT,
+    account    VARCHAR(16)  NOT NULL,
+    password   VARCHAR(32)  NOT NULL,
+    name       VARCHAR(64),
+    gender     VARCHAR(1),
+    email      VARCHAR(128),
+    phone      VARCHAR(32),
+    birthday   VARCHAR(10),
+    token      VARCHAR(255),
+    loginTime  BIGINT,
+    createTime BIGINT,
+    modifyTime BIGINT,
+    loginIP    VARCHAR(45),
+    PRIMARY KEY (accountId)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4;
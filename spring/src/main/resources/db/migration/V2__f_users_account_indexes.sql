@@ -0,0 +1,5 @@
+-- JWT长度超过255
+ALTER TABLE f_users MODIFY token VARCHAR(512);
+
+-- 登录校验 selectCredentials 只读取 account、password，由该索引直接返回，不回表
+CREATE INDEX idx_f_users_account_password ON f_users (account, password);
@@ -0,0 +1,137 @@
+package com.example.spring.mapper;
+
+import com.example.spring.pojo.User;
+import org.apache.ibatis.cursor.Cursor;
+import org.junit.jupiter.api.Test;
+import org.mybatis.spring.boot.test.autoconfigure.MybatisTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * 在MySQL兼容模式的H2上执行Flyway迁移，验证映射语句和迁移建立的唯一约束
+ */
+@MybatisTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:users;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.flyway.baseline-on-migrate=false"
+})
+class UserMapperTest {
+
+    @Autowired
+    private UserMapper userMapper;
+
+    private static User user(String account) {
+        User user = new User(account, "$2a$10$abcdefghijklmnopqrstuuabcdefghijklmnopqrstuvwxyz01234");
+        user.setName("测试");
+        user.setCreateTime(1L);
+        user.setModifyTime(1L);
+        return user;
+    }
+
+    @Test
+    void selectCredentialsReturnsOnlyAccountAndPassword() {
+        userMapper.insert(user("alice"));
+
+        User credentials = userMapper.selectCredentials("alice");
+        assertEquals("alice", credentials.getAccount());
+        assertEquals(60, credentials.getPassword().length());
+        assertNull(credentials.getName());
+        assertNull(userMapper.selectCredentials("nobody"));
+    }
+
+    @Test
+    void existsByAccount() {
+        userMapper.insert(user("bob"));
+
+        assertNotNull(userMapper.existsByAccount("bob"));
+        assertNull(userMapper.existsByAccount("nobody"));
+    }
+
+    @Test
+    void duplicateAccountViolatesUniqueIndex() {
+        userMapper.insert(user("carol"));
+
+        assertThrows(DuplicateKeyException.class, () -> userMapper.insert(user("carol")));
+    }
+
+    @Test
+    void insertBatchSkipsExistingAccounts() {
+        userMapper.insert(user("dave"));
+
+        int inserted = userMapper.insertBatchSkipExisting(List.of(user("dave"), user("erin"), user("frank")));
+
+        assertEquals(2, inserted);
+        assertNotNull(userMapper.existsByAccount("frank"));
+    }
+
+    @Test
+    void insertBatchRejectsOverlongAccountInsteadOfTruncating() {
+        assertThrows(DataIntegrityViolationException.class,
+                () -> userMapper.insertBatchSkipExisting(List.of(user("x".repeat(17)))));
+        assertNull(userMapper.existsByAccount("x".repeat(16)));
+    }
+
+    @Test
+    void updateLoginMetadata() {
+        userMapper.insert(user("grace"));
+        User login = new User();
+        login.setAccount("grace");
+        login.setLoginTime(42L);
+        login.setLoginIP("10.0.0.1");
+        login.setToken("t".repeat(400));
+
+        assertEquals(1, userMapper.updateLoginMetadata(login));
+        User stored = userMapper.selectByAccount("grace");
+        assertEquals(42L, stored.getLoginTime());
+        assertEquals("10.0.0.1", stored.getLoginIP());
+    }
+
+    @Test
+    void selectPageUsesKeysetOnAccountId() {
+        userMapper.insertBatchSkipExisting(List.of(user("u1"), user("u2"), user("u3"), user("v1")));
+
+        List<User> first = userMapper.selectPage(0, "u", 2);
+        assertEquals(List.of("u1", "u2"), first.stream().map(User::getAccount).toList());
+        assertNull(first.get(0).getPassword());
+
+        List<User> second = userMapper.selectPage(first.get(1).getAccountId(), "u", 2);
+        assertEquals(List.of("u3"), second.stream().map(User::getAccount).toList());
+    }
+
+    @Test
+    void selectPageMatchesWildcardsLiterally() {
+        userMapper.insertBatchSkipExisting(List.of(user("a_1"), user("ab1"), user("c%1"), user("cd1")));
+
+        assertEquals(List.of("a_1"), userMapper.selectPage(0, "a_", 10).stream().map(User::getAccount).toList());
+        assertEquals(List.of("c%1"), userMapper.selectPage(0, "c%", 10).stream().map(User::getAccount).toList());
+    }
+
+    @Test
+    void scanAllStreamsEveryUser() throws Exception {
+        userMapper.insertBatchSkipExisting(List.of(user("s1"), user("s2"), user("s3")));
+
+        List<String> accounts = new ArrayList<>();
+        try (Cursor<User> cursor = userMapper.scanAll()) {
+            for (User user : cursor) {
+                accounts.add(user.getAccount());
+                assertNull(user.getPassword());
+            }
+        }
+        assertEquals(List.of("s1", "s2", "s3"), accounts);
+    }
+}